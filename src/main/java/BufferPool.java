@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reusable byte arrays for request bodies and encoded responses.
+ *
+ * Arrays come in size classes of powers of two from MIN_CLASS_SIZE to
+ * MAX_CLASS_SIZE; larger ones are allocated and dropped as before. Each class
+ * retains at most bytesPerClass worth of arrays in a slot array. A thread
+ * starts probing at a slot derived from its identity and gives up after PROBES
+ * slots, so threads mostly work on different slots and an empty or full pool
+ * costs a few reads, never a lock.
+ *
+ * With leak detection on (tests, or werkstatt.bufferPool.leakDetection) every
+ * lease is recorded with the stack trace of its acquire. Releasing an array
+ * twice or one the pool never handed out throws, released arrays are
+ * overwritten with POISON to expose use after release, and
+ * {@link #leaks()} lists the arrays still out.
+ */
+final class BufferPool {
+
+    static final int MIN_CLASS_SIZE = 1024;
+    static final int MAX_CLASS_SIZE = 64 * 1024;
+    static final byte POISON = (byte) 0xDB;
+
+    private static final int MIN_CLASS_BITS = Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - MIN_CLASS_BITS + 1;
+    private static final int PROBES = 8;
+
+    private static volatile BufferPool shared = new BufferPool(1024 * 1024, false);
+
+    private final List<AtomicReferenceArray<byte[]>> classes = new ArrayList<>(CLASSES);
+    private final Map<byte[], Throwable> leased; // null unless leak detection is on
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    BufferPool(int bytesPerClass, boolean leakDetection) {
+        for (int i = 0; i < CLASSES; i++) {
+            int slots = Math.max(PROBES, bytesPerClass / (MIN_CLASS_SIZE << i));
+            classes.add(new AtomicReferenceArray<>(Integer.highestOneBit(slots)));
+        }
+        this.leased = leakDetection ? new ConcurrentHashMap<>() : null;
+    }
+
+    /** The pool of the server's handlers; replaced once at startup from the configuration. */
+    static BufferPool shared() {
+        return shared;
+    }
+
+    static void install(BufferPool pool) {
+        shared = pool;
+    }
+
+    /** An array of at least minLength bytes, with undefined content. */
+    byte[] acquire(int minLength) {
+        int sizeClass = sizeClass(minLength);
+        byte[] array = null;
+        if (sizeClass >= 0) {
+            AtomicReferenceArray<byte[]> slots = classes.get(sizeClass);
+            int mask = slots.length() - 1;
+            int start = probeStart();
+            for (int i = 0; i < PROBES && array == null; i++) {
+                int slot = (start + i) & mask;
+                byte[] candidate = slots.get(slot);
+                if (candidate != null && slots.compareAndSet(slot, candidate, null)) {
+                    array = candidate;
+                }
+            }
+        }
+        if (array != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            array = new byte[sizeClass >= 0 ? MIN_CLASS_SIZE << sizeClass : minLength];
+        }
+        if (leased != null) {
+            leased.put(array, new Throwable("buffer of " + array.length + " bytes acquired here"));
+        }
+        return array;
+    }
+
+    /** Returns an array from {@link #acquire}; the caller must not touch it afterwards. */
+    void release(byte[] array) {
+        if (leased != null) {
+            if (leased.remove(array) == null) {
+                throw new IllegalStateException("buffer of " + array.length
+                    + " bytes released twice or not acquired from this pool");
+            }
+            Arrays.fill(array, POISON);
+        }
+        int sizeClass = sizeClass(array.length);
+        if (sizeClass < 0 || MIN_CLASS_SIZE << sizeClass != array.length) {
+            return;
+        }
+        AtomicReferenceArray<byte[]> slots = classes.get(sizeClass);
+        int mask = slots.length() - 1;
+        int start = probeStart();
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, array)) {
+                return;
+            }
+        }
+        // class full: leave the array to the garbage collector
+    }
+
+    /**
+     * Reads a stream into a pooled array, up to maxLength + 1 bytes so an
+     * oversized body can be told apart. Starts with the expected length if
+     * known (Content-Length) and moves to larger classes as needed.
+     */
+    Lease read(InputStream in, int expectedLength, int maxLength) throws IOException {
+        byte[] array = acquire(Math.max(1, Math.min(expectedLength + 1, maxLength + 1)));
+        int length = 0;
+        try {
+            while (length <= maxLength) {
+                if (length == array.length) {
+                    byte[] larger = acquire(Math.min(array.length * 2, maxLength + 1));
+                    System.arraycopy(array, 0, larger, 0, length);
+                    release(array);
+                    array = larger;
+                }
+                int n = in.read(array, length, Math.min(array.length, maxLength + 1) - length);
+                if (n < 0) {
+                    break;
+                }
+                length += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            release(array);
+            throw e;
+        }
+        return new Lease(this, array, length);
+    }
+
+    /** Encodes the text as UTF-8 into a pooled array, without an intermediate String or byte[]. */
+    Lease encodeUtf8(CharSequence text) {
+        int length = utf8Length(text);
+        byte[] array = acquire(length);
+        int pos = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                array[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                array[pos++] = (byte) (0xC0 | c >> 6);
+                array[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                array[pos++] = (byte) (0xF0 | cp >> 18);
+                array[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                array[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                array[pos++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                array[pos++] = '?'; // unpaired surrogate, as String.getBytes does
+            } else {
+                array[pos++] = (byte) (0xE0 | c >> 12);
+                array[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                array[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return new Lease(this, array, length);
+    }
+
+    /** Arrays handed out and not yet released, with where they were acquired; empty without leak detection. */
+    List<Throwable> leaks() {
+        return leased == null ? List.of() : new ArrayList<>(leased.values());
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    // -1 above MAX_CLASS_SIZE
+    private static int sizeClass(int length) {
+        if (length > MAX_CLASS_SIZE) {
+            return -1;
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(length, MIN_CLASS_SIZE) - 1);
+        return bits - MIN_CLASS_BITS;
+    }
+
+    private static int probeStart() {
+        return System.identityHashCode(Thread.currentThread()) * 0x9E3779B9 >>> 16;
+    }
+
+    private static int utf8Length(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    length += 2; // 4 bytes for 2 chars
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    length += 2;
+                }
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /** length bytes of content in a pooled array; closing it returns the array. */
+    static final class Lease implements AutoCloseable {
+        private final BufferPool pool;
+        final byte[] array;
+        final int length;
+        private boolean closed;
+
+        Lease(BufferPool pool, byte[] array, int length) {
+            this.pool = pool;
+            this.array = array;
+            this.length = length;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(array, 0, length);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.release(array);
+            }
+        }
+    }
+}
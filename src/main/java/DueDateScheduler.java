@@ -0,0 +1,383 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Due-date reminders for open work orders, replacing the external job that
+ * fetched all orders every few minutes.
+ *
+ * Every order that is not COMPLETED gets a DUE reminder leadDays before its
+ * due date and an OVERDUE reminder on the day after it. The scheduler follows
+ * the store's mutation log, so a PUT that moves the due date re-arms the
+ * order, completing it cancels it and a DELETE drops it; other changes leave
+ * it alone. An order whose reminder day has already passed when it is
+ * scheduled is reminded on the next tick.
+ *
+ * Orders wait in a hierarchical timing wheel of days: LEVELS wheels of
+ * SLOTS slots, level l covering SLOTS^(l+1) days. An order sits in the
+ * lowest wheel whose span still contains its reminder day. Each new day
+ * moves the orders of the matching upper slots down one level and fires the
+ * day's slot, so a tick costs the orders due that day plus the few orders
+ * cascading, independent of how many orders are waiting.
+ */
+final class DueDateScheduler implements WorkOrderStore.Listener {
+
+    static final int SLOTS = 64;
+    static final int LEVELS = 3;
+    private static final int SLOT_BITS = 6;
+    private static final int RECENT = 100;
+
+    /** Receives the reminders of one tick, outside the scheduler lock. */
+    interface Sink {
+        void deliver(List<Reminder> reminders);
+    }
+
+    static final class Reminder {
+        enum Type { DUE, OVERDUE }
+
+        final Type type;
+        final int day; // epoch day the reminder fired
+        final WorkOrder order;
+
+        Reminder(Type type, int day, WorkOrder order) {
+            this.type = type;
+            this.day = day;
+            this.order = order;
+        }
+
+        String toJson() {
+            return "{\"type\":\"" + type + "\",\"day\":\"" + WorkOrder.formatDueDate(day)
+                + "\",\"order\":" + order.toJson() + "}";
+        }
+    }
+
+    private static final class Entry {
+        final long id;
+        final int dueDate;
+        Reminder.Type next;
+        int fireDay;
+        Set<Long> bucket; // slot or ready set holding the id
+
+        Entry(long id, int dueDate) {
+            this.id = id;
+            this.dueDate = dueDate;
+        }
+    }
+
+    private final WorkOrderStore store;
+    private final Clock clock;
+    private final int leadDays;
+    private final Sink sink;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final List<List<Set<Long>>> wheels = new ArrayList<>(LEVELS);
+    private final Set<Long> overflow = new HashSet<>(); // beyond the top wheel
+    private final Set<Long> ready = new HashSet<>(); // reminder day already reached
+    private final Deque<Reminder> recent = new ArrayDeque<>(RECENT);
+    private long currentDay;
+    private long fired;
+    private ScheduledExecutorService ticker;
+
+    DueDateScheduler(WorkOrderStore store, Clock clock, int leadDays, Sink sink) {
+        this.store = store;
+        this.clock = clock;
+        this.leadDays = leadDays;
+        this.sink = sink;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<Long>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new HashSet<>());
+            }
+            wheels.add(slots);
+        }
+        this.currentDay = today();
+    }
+
+    /** Schedules the current orders, follows the store from now on and ticks every checkSeconds. */
+    void start(int checkSeconds) {
+        attach();
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "due-date-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tickSafely, 0, checkSeconds, TimeUnit.SECONDS);
+    }
+
+    void stop() {
+        store.removeListener(this);
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the store and subscribes to its mutations, without
+     * starting a thread. Holding the lock keeps mutations that follow the
+     * snapshot waiting in onMutation until the snapshot is scheduled.
+     */
+    synchronized void attach() {
+        WorkOrderStore.Snapshot snapshot = store.snapshotAndListen(this);
+        for (WorkOrder order : snapshot.orders) {
+            schedule(order);
+        }
+    }
+
+    // Called under the store lock: never block here
+    @Override
+    public synchronized void onMutation(WorkOrderStore.Mutation mutation) {
+        if (mutation.type == WorkOrderStore.Mutation.Type.DELETE) {
+            cancel(mutation.id);
+            return;
+        }
+        WorkOrder order = mutation.order;
+        Entry entry = entries.get(order.id);
+        if (order.status == WorkOrder.Status.COMPLETED) {
+            cancel(order.id);
+        } else if (entry == null || entry.dueDate != order.dueDate) {
+            schedule(order);
+        }
+    }
+
+    /** Advances to today, firing every reminder due by then, and hands them to the sink. */
+    void tick() {
+        List<Reminder> reminders = new ArrayList<>();
+        synchronized (this) {
+            long today = today();
+            drainReady(reminders);
+            while (currentDay < today) {
+                currentDay++;
+                cascade();
+                Set<Long> slot = wheels.get(0).get(slotIndex(currentDay, 0));
+                ready.addAll(slot);
+                for (Long id : slot) {
+                    entries.get(id).bucket = ready;
+                }
+                slot.clear();
+                drainReady(reminders);
+            }
+            for (Reminder reminder : reminders) {
+                if (recent.size() == RECENT) {
+                    recent.removeFirst();
+                }
+                recent.addLast(reminder);
+            }
+            fired += reminders.size();
+        }
+        if (!reminders.isEmpty()) {
+            sink.deliver(reminders);
+        }
+    }
+
+    synchronized int scheduled() {
+        return entries.size();
+    }
+
+    synchronized String statusJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"today\":\"").append(WorkOrder.formatDueDate((int) currentDay))
+            .append("\",\"leadDays\":").append(leadDays)
+            .append(",\"scheduled\":").append(entries.size())
+            .append(",\"fired\":").append(fired)
+            .append(",\"recent\":[");
+        boolean first = true;
+        for (Reminder reminder : recent) {
+            sb.append(first ? "" : ",").append(reminder.toJson());
+            first = false;
+        }
+        return sb.append("]}").toString();
+    }
+
+    /** Serves GET /reminders: pending count and the last RECENT reminders. */
+    Filter filter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                if (exchange.getRequestURI().getPath().equals("/reminders")) {
+                    WerkstattRESTServer.RequestHandler.sendJson(exchange, 200, statusJson());
+                    return;
+                }
+                chain.doFilter(exchange);
+            }
+
+            @Override
+            public String description() {
+                return "reminders";
+            }
+        };
+    }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // a failing sink must not stop the ticker
+            System.err.println("Reminders: tick failed: " + e);
+        }
+    }
+
+    private long today() {
+        return LocalDate.now(clock).toEpochDay();
+    }
+
+    private void schedule(WorkOrder order) {
+        cancel(order.id);
+        if (order.status == WorkOrder.Status.COMPLETED) {
+            return;
+        }
+        Entry entry = new Entry(order.id, order.dueDate);
+        if (currentDay > order.dueDate) {
+            entry.next = Reminder.Type.OVERDUE;
+            entry.fireDay = order.dueDate + 1;
+        } else {
+            entry.next = Reminder.Type.DUE;
+            entry.fireDay = order.dueDate - leadDays;
+        }
+        entries.put(order.id, entry);
+        place(entry);
+    }
+
+    private void cancel(long id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            entry.bucket.remove(id);
+        }
+    }
+
+    // puts the entry into the lowest wheel whose current span contains its day
+    private void place(Entry entry) {
+        Set<Long> bucket;
+        if (entry.fireDay <= currentDay) {
+            bucket = ready;
+        } else {
+            bucket = overflow;
+            for (int level = 0; level < LEVELS; level++) {
+                int parentShift = SLOT_BITS * (level + 1);
+                if (entry.fireDay >> parentShift == currentDay >> parentShift) {
+                    bucket = wheels.get(level).get(slotIndex(entry.fireDay, level));
+                    break;
+                }
+            }
+        }
+        bucket.add(entry.id);
+        entry.bucket = bucket;
+    }
+
+    // on entering a new span of an upper wheel, its slot for the span moves down a level
+    private void cascade() {
+        if ((currentDay & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+            replace(overflow);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((currentDay & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                replace(wheels.get(level).get(slotIndex(currentDay, level)));
+            }
+        }
+    }
+
+    private void replace(Set<Long> bucket) {
+        List<Long> ids = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Long id : ids) {
+            place(entries.get(id));
+        }
+    }
+
+    private void drainReady(List<Reminder> reminders) {
+        List<Long> ids = new ArrayList<>(ready);
+        ready.clear();
+        for (Long id : ids) {
+            Entry entry = entries.get(id);
+            WorkOrder order = store.get(id);
+            if (order == null || order.status == WorkOrder.Status.COMPLETED) {
+                // the mutation is about to reach onMutation
+                entries.remove(id);
+                continue;
+            }
+            reminders.add(new Reminder(entry.next, (int) currentDay, order));
+            if (entry.next == Reminder.Type.DUE) {
+                entry.next = Reminder.Type.OVERDUE;
+                entry.fireDay = entry.dueDate + 1;
+                place(entry);
+            } else {
+                entries.remove(id);
+            }
+        }
+    }
+
+    private static int slotIndex(long day, int level) {
+        return (int) (day >> (SLOT_BITS * level)) & (SLOTS - 1);
+    }
+
+    /** Prints every reminder to stdout. */
+    static final class LogSink implements Sink {
+        @Override
+        public void deliver(List<Reminder> reminders) {
+            for (Reminder reminder : reminders) {
+                WorkOrder order = reminder.order;
+                System.out.println("Reminder: " + reminder.type + " order " + order.id + " " + order.licensePlate
+                    + " (" + order.status + ", due " + WorkOrder.formatDueDate(order.dueDate) + ")");
+            }
+        }
+    }
+
+    /** Logs the reminders and POSTs them as one JSON array to a webhook, without waiting for it. */
+    static final class WebhookSink implements Sink {
+        private final URI uri;
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "reminder-webhook");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final HttpClient client;
+        private final Sink log = new LogSink();
+
+        WebhookSink(String url, Duration timeout) {
+            this.uri = URI.create(url);
+            this.client = HttpClient.newBuilder().connectTimeout(timeout).executor(executor).build();
+        }
+
+        @Override
+        public void deliver(List<Reminder> reminders) {
+            log.deliver(reminders);
+            StringBuilder body = new StringBuilder("[");
+            for (Reminder reminder : reminders) {
+                body.append(body.length() > 1 ? "," : "").append(reminder.toJson());
+            }
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.append(']').toString()))
+                .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+                if (e != null) {
+                    System.err.println("Reminders: webhook " + uri + " failed: " + e);
+                } else if (response.statusCode() >= 300) {
+                    System.err.println("Reminders: webhook " + uri + " answered " + response.statusCode());
+                }
+            });
+        }
+
+        void close() {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * The transport that accepts connections and feeds requests to an HttpHandler.
+ * WerkstattRESTServer builds the same handler pipeline for every engine and
+ * picks the engine at startup with werkstatt.engine=jdk|nio.
+ */
+interface HttpEngine {
+
+    void start() throws IOException;
+
+    /** Stops accepting connections and closes the open ones. */
+    void stop();
+
+    /** The bound port, useful when started on port 0. */
+    int port();
+
+    String name();
+
+    static HttpEngine create(ServerConfig config, HttpHandler handler, Executor executor) {
+        switch (config.engine) {
+            case "nio":
+                return new NioHttpEngine(config, handler, executor);
+            case "jdk":
+                return new JdkHttpEngine(config, handler, executor);
+            default:
+                throw new IllegalArgumentException("Unknown werkstatt.engine: " + config.engine);
+        }
+    }
+}
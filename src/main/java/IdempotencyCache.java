@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Responses of POST /workorders by Idempotency-Key, so a client retrying a
+ * create gets the original response instead of a second order.
+ *
+ * The first request with a key runs the create and stores its encoded
+ * response; requests with the same key arriving meanwhile wait for it, later
+ * ones get it straight from the map. A key is bound to the body it was first
+ * sent with: reusing it for a different body is an error, not a replay.
+ *
+ * Entries expire after the TTL and at most maxEntries are kept, the oldest go
+ * first. Both are enforced when a key is added, so there is no sweeper thread;
+ * an expired entry that is looked up before that counts as absent.
+ */
+final class IdempotencyCache {
+
+    static final String HEADER = "Idempotency-Key";
+    static final int MAX_KEY_LENGTH = 255;
+
+    /** A response as it was sent the first time. */
+    static final class Response {
+        final int status;
+        final String location;     // null without a Location header
+        final String contentType;
+        final byte[] body;
+        final boolean replayed;
+
+        Response(int status, String location, String contentType, byte[] body) {
+            this(status, location, contentType, body, false);
+        }
+
+        private Response(int status, String location, String contentType, byte[] body, boolean replayed) {
+            this.status = status;
+            this.location = location;
+            this.contentType = contentType;
+            this.body = body;
+            this.replayed = replayed;
+        }
+    }
+
+    /** Produces the response for a key seen for the first time. */
+    interface Action {
+        Response run() throws IOException;
+    }
+
+    private static final class Entry {
+        final String key;
+        final byte[] fingerprint;
+        final long createdAt;
+        final CompletableFuture<Response> response = new CompletableFuture<>();
+
+        Entry(String key, byte[] fingerprint, long createdAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ArrayDeque<Entry> insertionOrder = new ArrayDeque<>(); // guarded by itself
+
+    IdempotencyCache(int maxEntries, Duration ttl) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be >= 1, was " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /** 1 to 255 visible ASCII characters, e.g. a UUID. */
+    static boolean isValidKey(String key) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x21 || c > 0x7e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** SHA-256 of a request body, what a key is bound to. */
+    static byte[] fingerprint(byte[] body, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(body, 0, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every JVM", e);
+        }
+    }
+
+    /**
+     * The response for the key: from the cache, from a concurrent request with
+     * the same key once it is done, or else from running the action. Returns
+     * null if the key was first used with a different body.
+     *
+     * If the action throws, nothing is cached and waiting requests run it
+     * again themselves, one at a time.
+     */
+    Response execute(String key, byte[] fingerprint, Action action) throws IOException {
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = entries.get(key);
+            if (entry != null && isExpired(entry, now)) {
+                entries.remove(key, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                Entry created = new Entry(key, fingerprint, now);
+                entry = entries.putIfAbsent(key, created);
+                if (entry == null) {
+                    add(created, now);
+                    return run(created, action);
+                }
+            }
+            if (!Arrays.equals(entry.fingerprint, fingerprint)) {
+                return null;
+            }
+            try {
+                return entry.response.join();
+            } catch (CompletionException e) {
+                // the first request failed and removed its entry, try to take over
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Response run(Entry entry, Action action) throws IOException {
+        Response response;
+        try {
+            response = action.run();
+        } catch (IOException | RuntimeException | Error e) {
+            entries.remove(entry.key, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        entry.response.complete(new Response(response.status, response.location, response.contentType,
+            response.body, true));
+        return response;
+    }
+
+    private void add(Entry entry, long now) {
+        synchronized (insertionOrder) {
+            insertionOrder.addLast(entry);
+            // the deque also holds entries already removed by a lookup or a failure;
+            // removing those again is a no-op
+            Entry oldest;
+            while ((oldest = insertionOrder.peekFirst()) != null
+                    && (insertionOrder.size() > maxEntries || isExpired(oldest, now))) {
+                insertionOrder.removeFirst();
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt > ttlNanos;
+    }
+}
@@ -0,0 +1,45 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/** The JDK's built-in com.sun.net.httpserver.HttpServer. */
+final class JdkHttpEngine implements HttpEngine {
+
+    private final ServerConfig config;
+    private final HttpHandler handler;
+    private final Executor executor;
+    private HttpServer server;
+
+    JdkHttpEngine(ServerConfig config, HttpHandler handler, Executor executor) {
+        this.config = config;
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    @Override
+    public void start() throws IOException {
+        config.applyToJdkHttpServer();
+        server = HttpServer.create(new InetSocketAddress(config.port), config.backlog);
+        server.createContext("/", handler);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @Override
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Override
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public String name() {
+        return "jdk";
+    }
+}
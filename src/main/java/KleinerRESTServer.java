@@ -1,9 +1,13 @@
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -17,7 +21,7 @@ public class KleinerRESTServer {
 		try {
 			HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
 			HttpContext context = server.createContext("/");
-			context.setHandler(new Handler());
+			context.setHandler(new Handler(new UserRegistry()));
 
 			server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
 			server.start();
@@ -45,6 +49,9 @@ public class KleinerRESTServer {
 		private static final int BAD_REQUEST = 400;
 		private static final int NOT_FOUND = 404;
 		private static final int METHOD_NOT_ALLOWED = 405;
+		private static final int CONFLICT = 409;
+		private static final int PAYLOAD_TOO_LARGE = 413;
+		private static final int MAX_BODY_BYTES = 16 * 1024;
 		// http error messages
 		private static final String BAD_REQUEST_MAL_FORMED_ID = "<h1>400 Bad Request</h1>malformed request syntax. User ID not an integer.";
 		private static final String BAD_REQUEST_INVALID_CONTENT_FORMAT_OR_VALUES = "<h1>400 Bad Request</h1>content of invalid format or value constraint violation. Should be a user in JSON format";
@@ -52,6 +59,14 @@ public class KleinerRESTServer {
 		private static final String NOT_FOUND_WRONG_CONTEXT = "<h1>404 Not Found</h1>No context found for request. Use URL /users or /users/{id}";
 		private static final String NOT_FOUND_NO_USER = "<h1>404 Not Found</h1>valid endpoint but resource does not exist. no user with id = %d";
 		private static final String BAD_REQUEST_INVALID_USER_ID = "<h1>400 Bad Request</h1>invalid user id. %d out of intervall [0,127]";
+		private static final String PAYLOAD_TOO_LARGE_BODY = "<h1>413 Payload Too Large</h1>request body larger than 16 KiB";
+		private static final String CONFLICT_NO_FREE_ID = "<h1>409 Conflict</h1>all user ids in intervall [0,127] are taken. Delete a user first";
+
+		private final UserRegistry registry;
+
+		Handler(UserRegistry registry) {
+			this.registry = registry;
+		}
 
 		@Override
 		public void handle(HttpExchange exchange) throws IOException {
@@ -80,7 +95,14 @@ public class KleinerRESTServer {
 			});
 
 			String query = exchange.getRequestURI().getQuery();
-			String body = new String(exchange.getRequestBody().readAllBytes());
+			String body;
+			try (BufferPool.Lease lease = BufferPool.shared().read(exchange.getRequestBody(), 0, MAX_BODY_BYTES)) {
+				if (lease.length > MAX_BODY_BYTES) {
+					errorResponse(exchange, PAYLOAD_TOO_LARGE, PAYLOAD_TOO_LARGE_BODY);
+					return;
+				}
+				body = new String(lease.array, 0, lease.length, StandardCharsets.UTF_8);
+			}
 			String request = MessageFormat.format(
 					"{0} Methode mit URI \"{1}\" und Query \"{2}\" und Body \"{3}\" und content type \"{4}\" erhalten.",
 					method, request_target_url, query, body, contenttype);
@@ -89,12 +111,15 @@ public class KleinerRESTServer {
 			if (request_target_url.equals("/users")) {
 				if (method.equals("POST")) {
 					if (contenttype.equals("[application/json]")) {
-						boolean parseUser = true;
-						if (parseUser) {
-							// add user to list, handle if user exists or list full
-							exchange.getResponseHeaders().add("Content-type", "text/json; charset=utf-8");
-							exchange.getResponseHeaders().add("Location", "http://localhost:8080/users/67");
-							exchange.sendResponseHeaders(CREATED, 0);
+						User user = User.parse(body);
+						if (user != null) {
+							int id = registry.add(user);
+							if (id >= 0) {
+								exchange.getResponseHeaders().add("Location", "http://localhost:" + port + "/users/" + id);
+								jsonResponse(exchange, CREATED, user.json);
+							} else {
+								errorResponse(exchange, CONFLICT, CONFLICT_NO_FREE_ID);
+							}
 						} else {
 							errorResponse(exchange, BAD_REQUEST, BAD_REQUEST_INVALID_CONTENT_FORMAT_OR_VALUES);
 						}
@@ -103,12 +128,7 @@ public class KleinerRESTServer {
 					}
 				} else if (method.equals("GET")) {
 					// The resource has been fetched and transmitted in the message body
-					String response = "[ { \"id\" : 67, \"user\" : { \"email\": \"dfhi@htwsaar.de\", \"authorization\" : \"rm\" } },{ \"id\" : 57, \"user\" : { \"email\": \"isfates@ul.de\", \"authorization\" : \"rcmd\" } } ]";
-					exchange.getResponseHeaders().add("Content-type", "text/json; charset=utf-8");
-					exchange.sendResponseHeaders(OK, response.getBytes().length);
-					OutputStream os = exchange.getResponseBody();
-					os.write(response.getBytes());
-					os.close();
+					jsonResponse(exchange, OK, registry.listJson());
 				} else {
 					exchange.getResponseHeaders().add("Allow", "POST, GET");
 					exchange.sendResponseHeaders(METHOD_NOT_ALLOWED, 0);
@@ -118,31 +138,39 @@ public class KleinerRESTServer {
 					String pathParameter = request_target_url.substring(7);
 					System.out.println("Path Parameter " + pathParameter);
 					int requestedID = Integer.parseInt(pathParameter);
-					if (0 <= requestedID && requestedID <= 127) {
-						boolean userFound = true;
-						if (userFound) {
-							if (method.equals("GET")) {
-								// The resource has been fetched and transmitted in the message body
-								String response = "{\"email\":\"dfhi@htwsaar.de\",\"authorization\":\"rm\"}";
-								exchange.getResponseHeaders().add("Content-type", "text/json; charset=utf-8");
-								exchange.sendResponseHeaders(OK, response.getBytes().length);
-								OutputStream os = exchange.getResponseBody();
-								os.write(response.getBytes());
-								os.close();
-							} else if (method.equals("PUT")) {
-								// update User
+					if (0 <= requestedID && requestedID < UserRegistry.CAPACITY) {
+						if (method.equals("GET")) {
+							// The resource has been fetched and transmitted in the message body
+							User user = registry.get(requestedID);
+							if (user != null) {
+								jsonResponse(exchange, OK, user.json);
+							} else {
+								errorResponse(exchange, NOT_FOUND, String.format(NOT_FOUND_NO_USER, requestedID));
+							}
+						} else if (method.equals("PUT")) {
+							// update User
+							if (!contenttype.equals("[application/json]")) {
+								errorResponse(exchange, BAD_REQUEST, BAD_REQUEST_INVALID_CONTENT_TYPE);
+								return;
+							}
+							User user = User.parse(body);
+							if (user == null) {
+								errorResponse(exchange, BAD_REQUEST, BAD_REQUEST_INVALID_CONTENT_FORMAT_OR_VALUES);
+							} else if (registry.replace(requestedID, user)) {
 								exchange.sendResponseHeaders(NO_CONTENT, -1);
-							} else if (method.equals("DELETE")) {
-								// delete user
+							} else {
+								errorResponse(exchange, NOT_FOUND, String.format(NOT_FOUND_NO_USER, requestedID));
+							}
+						} else if (method.equals("DELETE")) {
+							// delete user
+							if (registry.remove(requestedID)) {
 								exchange.sendResponseHeaders(NO_CONTENT, -1);
 							} else {
-								exchange.getResponseHeaders().add("Allow", "GET, PUT, DELETE");
-								exchange.sendResponseHeaders(METHOD_NOT_ALLOWED, 0);
+								errorResponse(exchange, NOT_FOUND, String.format(NOT_FOUND_NO_USER, requestedID));
 							}
-						} else if (method.equals("GET") || method.equals("PUT") || method.equals("DELETE")) {
-							errorResponse(exchange, NOT_FOUND, String.format(NOT_FOUND_NO_USER, requestedID));
 						} else {
-							exchange.sendResponseHeaders(METHOD_NOT_ALLOWED, 0);
+							exchange.getResponseHeaders().add("Allow", "GET, PUT, DELETE");
+							exchange.sendResponseHeaders(METHOD_NOT_ALLOWED, -1);
 						}
 					} else {
 						errorResponse(exchange, BAD_REQUEST, String.format(BAD_REQUEST_INVALID_USER_ID, requestedID));
@@ -157,12 +185,141 @@ public class KleinerRESTServer {
 
 	}
 
+	/** A user of the auth service; the JSON served for it is encoded once, on creation. */
+	static final class User {
+		final String email;
+		final String authorization; // rights out of r(ead), c(reate), m(odify), d(elete)
+		final byte[] json;
+
+		User(String email, String authorization) {
+			this.email = email;
+			this.authorization = authorization;
+			this.json = ("{\"email\":\"" + email + "\",\"authorization\":\"" + authorization + "\"}")
+					.getBytes(StandardCharsets.UTF_8);
+		}
+
+		/** Parses {"email":"...","authorization":"rcmd"}; null if a value is missing or invalid. */
+		static User parse(String body) {
+			String email = WerkstattRESTServer.RequestHandler.extractJsonValue(body, "email");
+			String authorization = WerkstattRESTServer.RequestHandler.extractJsonValue(body, "authorization");
+			if (email == null || authorization == null || email.indexOf('@') < 1 || email.indexOf('\\') >= 0
+					|| !authorization.matches("[rcmd]{1,4}")) {
+				return null;
+			}
+			return new User(email, authorization);
+		}
+	}
+
+	/**
+	 * Users with the ids 0..127, one array slot per id.
+	 *
+	 * Two 64-bit words mark the taken ids. POST claims the lowest free bit with
+	 * a compare-and-set, so concurrent requests never get the same id and
+	 * never block each other; the user is published in its slot afterwards.
+	 * DELETE empties the slot before it frees the bit, so a new owner of the
+	 * id cannot be overwritten by the old one. GET, PUT and DELETE touch only
+	 * the slot of their id.
+	 */
+	static final class UserRegistry {
+
+		static final int CAPACITY = 128;
+
+		private final AtomicLongArray taken = new AtomicLongArray(CAPACITY / 64);
+		private final AtomicReferenceArray<User> slots = new AtomicReferenceArray<>(CAPACITY);
+
+		/** Stores the user under the lowest free id and returns it, or -1 if all ids are taken. */
+		int add(User user) {
+			for (int word = 0; word < taken.length(); word++) {
+				long bits = taken.get(word);
+				while (bits != -1L) {
+					int bit = Long.numberOfTrailingZeros(~bits);
+					if (taken.compareAndSet(word, bits, bits | (1L << bit))) {
+						int id = word * 64 + bit;
+						slots.set(id, user);
+						return id;
+					}
+					bits = taken.get(word);
+				}
+			}
+			return -1;
+		}
+
+		/** The user, or null if there is none (yet) under the id. */
+		User get(int id) {
+			return slots.get(id);
+		}
+
+		/** Replaces an existing user; false if the id is not in use. */
+		boolean replace(int id, User user) {
+			User current = slots.get(id);
+			while (current != null) {
+				if (slots.compareAndSet(id, current, user)) {
+					return true;
+				}
+				current = slots.get(id);
+			}
+			return false;
+		}
+
+		boolean remove(int id) {
+			if (slots.getAndSet(id, null) == null) {
+				return false;
+			}
+			int word = id / 64;
+			long mask = 1L << (id % 64);
+			long bits;
+			do {
+				bits = taken.get(word);
+			} while (!taken.compareAndSet(word, bits, bits & ~mask));
+			return true;
+		}
+
+		int size() {
+			int size = 0;
+			for (int word = 0; word < taken.length(); word++) {
+				size += Long.bitCount(taken.get(word));
+			}
+			return size;
+		}
+
+		/** [{"id":0,"user":{...}},...] of the users present, in id order, from their encoded JSON. */
+		byte[] listJson() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(64 + size() * 64);
+			out.write('[');
+			for (int word = 0; word < taken.length(); word++) {
+				for (long bits = taken.get(word); bits != 0; bits &= bits - 1) {
+					int id = word * 64 + Long.numberOfTrailingZeros(bits);
+					User user = slots.get(id);
+					if (user != null) {
+						out.writeBytes(((out.size() > 1 ? "," : "") + "{\"id\":" + id + ",\"user\":")
+								.getBytes(StandardCharsets.US_ASCII));
+						out.writeBytes(user.json);
+						out.write('}');
+					}
+				}
+			}
+			out.write(']');
+			return out.toByteArray();
+		}
+	}
+
+	static void jsonResponse(HttpExchange exchange, int http_status_code, byte[] json) throws IOException {
+		exchange.getResponseHeaders().add("Content-type", "text/json; charset=utf-8");
+		exchange.sendResponseHeaders(http_status_code, json.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(json);
+		os.close();
+	}
+
 	public static void errorResponse(HttpExchange exchange, int http_status_code, String htmlRspMsg)
 			throws IOException {
 		exchange.getResponseHeaders().add("Content-type", "text/html; charset=utf-8");
-		exchange.sendResponseHeaders(http_status_code, htmlRspMsg.getBytes().length);
-		OutputStream os = exchange.getResponseBody();
-		os.write(htmlRspMsg.getBytes());
-		os.close();
+		// encoded once, into a pooled buffer
+		try (BufferPool.Lease response = BufferPool.shared().encodeUtf8(htmlRspMsg)) {
+			exchange.sendResponseHeaders(http_status_code, response.length);
+			OutputStream os = exchange.getResponseBody();
+			response.writeTo(os);
+			os.close();
+		}
 	}
 }
@@ -0,0 +1,792 @@
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpPrincipal;
+
+/**
+ * HTTP/1.1 engine on plain java.nio: one acceptor thread hands connections to
+ * a few selector-based event loops.
+ *
+ * Connections read into direct ByteBuffers from a shared pool. Once a request
+ * is complete it is wrapped in an HttpExchange and run on the executor, so the
+ * handler pipeline is exactly the one the JDK engine runs. The handler's
+ * encoded response goes straight into pooled direct buffers and is written
+ * with one gathering write of head and body, so the socket layer does not copy
+ * it again the way it does for heap arrays.
+ *
+ * Requests on a connection are answered in order: pipelined requests stay in
+ * the read buffer until the previous response has been written. Request
+ * bodies need a Content-Length; chunked uploads are answered with 411.
+ */
+final class NioHttpEngine implements HttpEngine {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ServerConfig config;
+    private final HttpHandler handler;
+    private final Executor executor;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+    private final long idleTimeoutNanos;
+    private final long requestTimeoutNanos;
+
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    NioHttpEngine(ServerConfig config, HttpHandler handler, Executor executor) {
+        this.config = config;
+        this.handler = handler;
+        this.executor = executor;
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(config.idleTimeoutSeconds);
+        this.requestTimeoutNanos = TimeUnit.SECONDS.toNanos(config.requestTimeoutSeconds);
+    }
+
+    @Override
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(config.port), config.backlog);
+        running = true;
+
+        loops = new EventLoop[config.nioEventLoops];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+            loops[i].thread.start();
+        }
+        acceptor = new Thread(this::acceptLoop, "nio-acceptor");
+        acceptor.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        try {
+            acceptor.join(1000);
+            for (EventLoop loop : loops) {
+                loop.thread.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public String name() {
+        return "nio (" + config.nioEventLoops + " event loops)";
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                if (openConnections.incrementAndGet() > config.maxConnections) {
+                    openConnections.decrementAndGet();
+                    channel.close();
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("nio-acceptor: " + e);
+                }
+            }
+        }
+    }
+
+    // --- EVENT LOOP ---
+
+    private final class EventLoop implements Runnable {
+        final Thread thread;
+        final Selector selector;
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // set once run() has closed its connections; tasks queued later run on the caller
+        volatile boolean terminated;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-loop-" + index);
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (terminated) {
+                // the loop is gone, e.g. a response finished after stop(): its connection is
+                // closed, so the task only releases its buffers
+                runTasks();
+            } else {
+                selector.wakeup();
+            }
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                ByteBuffer in = acquireBuffer();
+                try {
+                    Connection connection = new Connection(this, channel, in);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException | ClosedSelectorException e) {
+                    releaseBuffer(in);
+                    closeQuietly(channel);
+                    openConnections.decrementAndGet();
+                }
+            });
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void run() {
+            long nextExpiryCheck = System.nanoTime();
+            try {
+                while (running) {
+                    selector.select(1000);
+                    runTasks();
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (RuntimeException e) {
+                            // a bug triggered by one connection must not stop the loop for all others
+                            System.err.println(thread.getName() + ": closing connection after " + e);
+                            connection.close();
+                        }
+                    }
+                    long now = System.nanoTime();
+                    if (now - nextExpiryCheck >= 0) {
+                        expireIdle(now);
+                        nextExpiryCheck = now + TimeUnit.SECONDS.toNanos(1);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    System.err.println(thread.getName() + ": " + e);
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                closeQuietly(selector);
+                terminated = true;
+                runTasks();
+            }
+        }
+
+        private void expireIdle(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection.closed || connection.inFlight) {
+                    continue;
+                }
+                long timeout = connection.hasPartialRequest() ? requestTimeoutNanos : idleTimeoutNanos;
+                if (now - connection.lastActive > timeout) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    // --- BUFFER POOL ---
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        }
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    // Buffers beyond the retention limit are left to the GC
+    private void releaseBuffer(ByteBuffer buffer) {
+        if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            bufferPool.offer(buffer);
+        } else {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+
+    // Index 0 is always the heap-allocated response head, the rest come from the pool
+    private void releaseBody(ByteBuffer[] buffers) {
+        for (int i = 1; i < buffers.length; i++) {
+            releaseBuffer(buffers[i]);
+        }
+    }
+
+    // --- CONNECTION ---
+
+    /** State of one client connection; only touched by its event loop thread. */
+    private final class Connection {
+        final EventLoop loop;
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in; // kept in write mode between reads
+        long lastActive = System.nanoTime();
+        boolean inFlight;
+        boolean closed;
+
+        // request being parsed
+        NioExchange request;
+        byte[] body;
+        int bodyFilled;
+
+        ByteBuffer[] pendingWrite;
+        boolean closeAfterWrite;
+        ByteBuffer pendingContinue; // "100 Continue" not yet fully written
+
+        Connection(EventLoop loop, SocketChannel channel, ByteBuffer in) {
+            this.loop = loop;
+            this.channel = channel;
+            this.in = in;
+        }
+
+        boolean hasPartialRequest() {
+            return request != null || in.position() > 0;
+        }
+
+        void onReadable() {
+            try {
+                int n = channel.read(in);
+                if (n < 0) {
+                    close();
+                    return;
+                }
+                lastActive = System.nanoTime();
+                process();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /** Parses as many complete requests as possible; stops while one is in flight. */
+        private void process() throws IOException {
+            in.flip();
+            try {
+                while (!inFlight && !closed && parseStep()) {
+                    // keep going, pipelined request in the buffer
+                }
+            } finally {
+                if (!closed) {
+                    in.compact();
+                }
+            }
+            if (!closed && !inFlight && request == null && !in.hasRemaining()) {
+                // header block does not fit in the read buffer
+                respondAndClose(431, "Request Header Fields Too Large");
+            }
+        }
+
+        /** Returns true if a request was dispatched and more buffered bytes may follow. */
+        private boolean parseStep() throws IOException {
+            if (request == null) {
+                int end = findHeaderEnd(in);
+                if (end < 0) {
+                    return false;
+                }
+                byte[] head = new byte[end - in.position()];
+                in.get(head);
+                in.position(in.position() + 4);
+                if (!parseHead(new String(head, StandardCharsets.ISO_8859_1))) {
+                    return false;
+                }
+            }
+            int toCopy = Math.min(in.remaining(), body.length - bodyFilled);
+            in.get(body, bodyFilled, toCopy);
+            bodyFilled += toCopy;
+            if (bodyFilled < body.length) {
+                return false;
+            }
+            dispatch();
+            return true;
+        }
+
+        private boolean parseHead(String head) throws IOException {
+            String[] lines = head.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+                respondAndClose(400, "Bad Request");
+                return false;
+            }
+            URI uri;
+            try {
+                uri = new URI(requestLine[1]);
+            } catch (URISyntaxException e) {
+                respondAndClose(400, "Bad Request");
+                return false;
+            }
+
+            Headers headers = new Headers();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    respondAndClose(400, "Bad Request");
+                    return false;
+                }
+                try {
+                    headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+                } catch (IllegalArgumentException e) {
+                    // bare CR or LF in a name or value, which Headers refuses
+                    respondAndClose(400, "Bad Request");
+                    return false;
+                }
+            }
+
+            if (headers.containsKey("Transfer-encoding")) {
+                respondAndClose(411, "Length Required");
+                return false;
+            }
+            long contentLength = 0;
+            String lengthHeader = headers.getFirst("Content-length");
+            if (lengthHeader != null) {
+                try {
+                    contentLength = Long.parseLong(lengthHeader);
+                } catch (NumberFormatException e) {
+                    contentLength = -1;
+                }
+                if (contentLength < 0) {
+                    respondAndClose(400, "Bad Request");
+                    return false;
+                }
+            }
+            if (contentLength > config.maxBodyBytes) {
+                respondAndClose(413, "Payload Too Large");
+                return false;
+            }
+
+            String protocol = requestLine[2];
+            String connectionHeader = headers.getFirst("Connection");
+            boolean keepAlive = protocol.equals("HTTP/1.1")
+                ? !"close".equalsIgnoreCase(connectionHeader)
+                : "keep-alive".equalsIgnoreCase(connectionHeader);
+
+            request = new NioExchange(this, requestLine[0], uri, protocol, headers, keepAlive);
+            body = contentLength == 0 ? EMPTY : new byte[(int) contentLength];
+            bodyFilled = 0;
+
+            if (contentLength > in.remaining() && "100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+                pendingContinue = ByteBuffer.wrap(CONTINUE);
+                flushContinue();
+            }
+            return true;
+        }
+
+        private void dispatch() {
+            NioExchange exchange = request;
+            exchange.requestBody = new ByteArrayInputStream(body);
+            request = null;
+            body = null;
+            inFlight = true;
+            key.interestOps(0);
+            executor.execute(() -> {
+                try {
+                    handler.handle(exchange);
+                } catch (Throwable t) {
+                    exchange.failed = true;
+                    if (!(t instanceof IOException)) {
+                        System.err.println("nio: handler failed for " + exchange.getRequestURI() + ": " + t);
+                    }
+                } finally {
+                    exchange.finish();
+                }
+            });
+        }
+
+        /** Called from the handler thread once the response is complete. */
+        void respond(ByteBuffer[] buffers, boolean close) {
+            loop.execute(() -> {
+                if (closed) {
+                    releaseBody(buffers);
+                    return;
+                }
+                pendingWrite = buffers;
+                closeAfterWrite = close;
+                onWritable();
+            });
+        }
+
+        void onWritable() {
+            try {
+                if (pendingContinue != null) {
+                    if (!flushContinue()) {
+                        return;
+                    }
+                    if (pendingWrite == null) {
+                        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                while (hasRemaining(pendingWrite)) {
+                    if (channel.write(pendingWrite) == 0) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                releaseBody(pendingWrite);
+                pendingWrite = null;
+                lastActive = System.nanoTime();
+                if (closeAfterWrite) {
+                    close();
+                    return;
+                }
+                inFlight = false;
+                key.interestOps(SelectionKey.OP_READ);
+                process();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        // writes the rest of a 100 Continue; false while the socket buffer is full
+        private boolean flushContinue() throws IOException {
+            channel.write(pendingContinue);
+            if (pendingContinue.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return false;
+            }
+            pendingContinue = null;
+            return true;
+        }
+
+        /** An error response for a request that never reached the handler; closes once it is written. */
+        private void respondAndClose(int status, String reason) {
+            byte[] response = ("HTTP/1.1 " + status + " " + reason + "\r\nContent-Length: 0\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            request = null;
+            body = null;
+            inFlight = true; // nothing more is parsed from this connection
+            pendingWrite = new ByteBuffer[] {ByteBuffer.wrap(response)};
+            closeAfterWrite = true;
+            onWritable();
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(channel);
+            releaseBuffer(in);
+            in = null;
+            if (pendingWrite != null) {
+                releaseBody(pendingWrite);
+                pendingWrite = null;
+            }
+            pendingContinue = null;
+            openConnections.decrementAndGet();
+        }
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+    private static final Map<Integer, String> REASONS = new HashMap<>();
+
+    static {
+        REASONS.put(200, "OK");
+        REASONS.put(201, "Created");
+        REASONS.put(204, "No Content");
+        REASONS.put(400, "Bad Request");
+        REASONS.put(404, "Not Found");
+        REASONS.put(405, "Method Not Allowed");
+        REASONS.put(410, "Gone");
+        REASONS.put(413, "Payload Too Large");
+        REASONS.put(429, "Too Many Requests");
+        REASONS.put(500, "Internal Server Error");
+        REASONS.put(503, "Service Unavailable");
+    }
+
+    private static int findHeaderEnd(ByteBuffer buffer) {
+        for (int i = buffer.position(); i + 3 < buffer.limit(); i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n'
+                && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    // --- EXCHANGE ---
+
+    /**
+     * HttpExchange over a parsed request. The response body is collected in
+     * memory and handed to the event loop together with the encoded head when
+     * the handler closes the exchange.
+     */
+    private final class NioExchange extends HttpExchange {
+        private final Connection connection;
+        private final String method;
+        private final URI uri;
+        private final String protocol;
+        private final Headers requestHeaders;
+        private final Headers responseHeaders = new Headers();
+        private final boolean keepAlive;
+        private final InetSocketAddress remoteAddress;
+        private final InetSocketAddress localAddress;
+        private final Map<String, Object> attributes = new HashMap<>();
+        private final ResponseBody responseBody = new ResponseBody();
+
+        InputStream requestBody;
+        private InputStream userIn;
+        private OutputStream userOut;
+        private int responseCode = -1;
+        private boolean completed;
+        volatile boolean failed;
+
+        NioExchange(Connection connection, String method, URI uri, String protocol,
+                    Headers requestHeaders, boolean keepAlive) throws IOException {
+            this.connection = connection;
+            this.method = method;
+            this.uri = uri;
+            this.protocol = protocol;
+            this.requestHeaders = requestHeaders;
+            this.keepAlive = keepAlive;
+            this.remoteAddress = (InetSocketAddress) connection.channel.getRemoteAddress();
+            this.localAddress = (InetSocketAddress) connection.channel.getLocalAddress();
+        }
+
+        @Override public Headers getRequestHeaders() { return requestHeaders; }
+        @Override public Headers getResponseHeaders() { return responseHeaders; }
+        @Override public URI getRequestURI() { return uri; }
+        @Override public String getRequestMethod() { return method; }
+        @Override public HttpContext getHttpContext() { return null; }
+        @Override public InputStream getRequestBody() { return userIn != null ? userIn : requestBody; }
+        @Override public OutputStream getResponseBody() { return userOut != null ? userOut : responseBody; }
+        @Override public InetSocketAddress getRemoteAddress() { return remoteAddress; }
+        @Override public InetSocketAddress getLocalAddress() { return localAddress; }
+        @Override public int getResponseCode() { return responseCode; }
+        @Override public String getProtocol() { return protocol; }
+        @Override public Object getAttribute(String name) { return attributes.get(name); }
+        @Override public void setAttribute(String name, Object value) { attributes.put(name, value); }
+        @Override public HttpPrincipal getPrincipal() { return null; }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            if (i != null) {
+                userIn = i;
+            }
+            if (o != null) {
+                userOut = o;
+            }
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            if (responseCode != -1) {
+                throw new IOException("headers already sent");
+            }
+            responseCode = rCode;
+            if (responseLength == -1) {
+                complete();
+            }
+        }
+
+        @Override
+        public void close() {
+            complete();
+        }
+
+        /** Runs after the handler returns, whatever it did with the exchange. */
+        void finish() {
+            if (responseCode == -1 && !failed) {
+                responseCode = 500;
+            }
+            if (failed && !completed) {
+                completed = true;
+                responseBody.release();
+                connection.respond(new ByteBuffer[] {ByteBuffer.wrap(
+                    "HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII))}, true);
+                return;
+            }
+            complete();
+        }
+
+        private synchronized void complete() {
+            if (completed) {
+                return;
+            }
+            completed = true;
+
+            boolean close = !keepAlive || "close".equalsIgnoreCase(responseHeaders.getFirst("Connection"));
+            boolean noBody = responseCode == 204 || responseCode == 304 || method.equals("HEAD");
+            int length = responseBody.length(); // HEAD still announces the length of the GET body
+            if (noBody) {
+                responseBody.release();
+            }
+
+            StringBuilder head = new StringBuilder(256);
+            head.append("HTTP/1.1 ").append(responseCode).append(' ')
+                .append(REASONS.getOrDefault(responseCode, "Status")).append("\r\n");
+            for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+                String name = header.getKey();
+                if (name.equalsIgnoreCase("Content-length") || name.equalsIgnoreCase("Connection")) {
+                    continue;
+                }
+                for (String value : header.getValue()) {
+                    head.append(name).append(": ").append(value).append("\r\n");
+                }
+            }
+            if (responseCode != 204) {
+                head.append("Content-Length: ").append(length).append("\r\n");
+            }
+            head.append("Date: ").append(HTTP_DATE.format(ZonedDateTime.now(ZoneOffset.UTC))).append("\r\n");
+            if (close) {
+                head.append("Connection: close\r\n");
+            }
+            head.append("\r\n");
+
+            ByteBuffer[] buffers = responseBody.toBuffers(
+                ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1)));
+            connection.respond(buffers, close);
+        }
+
+        /** Body collected in pooled direct buffers; closing it completes the exchange like the JDK's stream does. */
+        private final class ResponseBody extends OutputStream {
+            private final List<ByteBuffer> chunks = new ArrayList<>(2);
+            private ByteBuffer current;
+            private int length;
+
+            int length() {
+                return length;
+            }
+
+            @Override
+            public void write(int b) {
+                writable().put((byte) b);
+                length++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                while (len > 0) {
+                    ByteBuffer buffer = writable();
+                    int n = Math.min(len, buffer.remaining());
+                    buffer.put(b, off, n);
+                    off += n;
+                    len -= n;
+                    length += n;
+                }
+            }
+
+            @Override
+            public void close() {
+                complete();
+            }
+
+            private ByteBuffer writable() {
+                if (current == null || !current.hasRemaining()) {
+                    current = acquireBuffer();
+                    chunks.add(current);
+                }
+                return current;
+            }
+
+            ByteBuffer[] toBuffers(ByteBuffer head) {
+                ByteBuffer[] buffers = new ByteBuffer[chunks.size() + 1];
+                buffers[0] = head;
+                for (int i = 0; i < chunks.size(); i++) {
+                    buffers[i + 1] = chunks.get(i).flip();
+                }
+                chunks.clear();
+                return buffers;
+            }
+
+            void release() {
+                for (ByteBuffer chunk : chunks) {
+                    releaseBuffer(chunk);
+                }
+                chunks.clear();
+                current = null;
+                length = 0;
+            }
+        }
+    }
+}
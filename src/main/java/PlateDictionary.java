@@ -0,0 +1,92 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonicalizes license plates to one shared String instance per distinct plate.
+ * The same car comes back to the workshop many times, so without this every
+ * order would keep its own copy of the plate text parsed from the request body.
+ *
+ * Plates are held weakly: an entry lives only as long as some order (or a
+ * caller) still references the plate, so plates of deleted orders, or of
+ * orders the router merely decoded from a shard response, are collected and
+ * the dictionary never holds more than the plates currently in use. Lookups
+ * take no lock; entries of collected plates are removed on the next call.
+ */
+final class PlateDictionary {
+
+    private static final ConcurrentMap<Entry, Entry> PLATES = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<String> COLLECTED = new ReferenceQueue<>();
+
+    private PlateDictionary() {
+    }
+
+    static String canonical(String plate) {
+        if (plate == null) {
+            return null;
+        }
+        expungeCollected();
+        Entry existing = PLATES.get(new Entry(plate, null));
+        String canonical = existing != null ? existing.get() : null;
+        if (canonical != null) {
+            return canonical;
+        }
+        Entry entry = new Entry(plate, COLLECTED);
+        while (true) {
+            existing = PLATES.putIfAbsent(entry, entry);
+            if (existing == null) {
+                return plate;
+            }
+            canonical = existing.get();
+            if (canonical != null) {
+                return canonical;
+            }
+            // collected but not yet expunged
+            PLATES.remove(existing, existing);
+        }
+    }
+
+    static int size() {
+        expungeCollected();
+        return PLATES.size();
+    }
+
+    private static void expungeCollected() {
+        Reference<? extends String> collected;
+        while ((collected = COLLECTED.poll()) != null) {
+            PLATES.remove(collected);
+        }
+    }
+
+    /**
+     * Map key and value at once. Equal to entries of an equal plate while the
+     * plate is alive; once collected only to itself, which is what removal uses.
+     */
+    private static final class Entry extends WeakReference<String> {
+        private final int hash;
+
+        Entry(String plate, ReferenceQueue<String> queue) {
+            super(plate, queue);
+            this.hash = plate.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            String plate = get();
+            return plate != null && plate.equals(((Entry) o).get());
+        }
+    }
+}
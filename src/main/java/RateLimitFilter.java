@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Per-client rate limiting that runs before routing.
+ *
+ * Every client gets one token bucket per route. Clients are identified by
+ * their remote address, or by the value of the configured key header
+ * (werkstatt.rateLimit.keyHeader, e.g. X-API-Key) when the request carries
+ * one. The header is trusted as-is, so only enable it behind a gateway that
+ * validates API keys.
+ *
+ * Buckets that have been full for longer than the idle timeout are dropped by
+ * a background sweep, so memory stays proportional to the active clients.
+ */
+class RateLimitFilter extends Filter {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    // Route 0 is the default for everything that matches no other route
+    private static final int DEFAULT_ROUTE = 0;
+    private static final int CREATE_ROUTE = 1;
+
+    private final TokenBucket.Limit[] limits;
+    private final String keyHeader;
+    private final long idleNanos;
+    private final ConcurrentMap<String, TokenBucket[]> buckets = new ConcurrentHashMap<>();
+
+    RateLimitFilter(ServerConfig config) {
+        this.limits = new TokenBucket.Limit[] {
+            new TokenBucket.Limit(config.rateLimitPerSecond, config.rateLimitBurst),
+            new TokenBucket.Limit(config.createRateLimitPerSecond, config.createRateLimitBurst)
+        };
+        this.keyHeader = config.rateLimitKeyHeader.isEmpty() ? null : config.rateLimitKeyHeader;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(config.rateLimitIdleSeconds);
+
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limit-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, config.rateLimitIdleSeconds / 2);
+        sweeper.scheduleAtFixedRate(() -> evictIdle(System.nanoTime()), period, period, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        int route = route(exchange);
+        TokenBucket bucket = buckets.computeIfAbsent(clientKey(exchange), k -> newBuckets())[route];
+
+        long waitNanos = bucket.tryAcquire(System.nanoTime());
+        if (waitNanos == 0) {
+            chain.doFilter(exchange);
+            return;
+        }
+
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+        WerkstattRESTServer.RequestHandler.sendError(exchange, TOO_MANY_REQUESTS, "Too many requests",
+            "Rate limit of " + limits[route].perSecond + " requests/s exceeded, retry in "
+                + retryAfterSeconds + "s", exchange.getRequestURI().getPath());
+    }
+
+    @Override
+    public String description() {
+        return "rate-limit";
+    }
+
+    int trackedClients() {
+        return buckets.size();
+    }
+
+    void evictIdle(long now) {
+        buckets.values().removeIf(clientBuckets -> {
+            for (TokenBucket bucket : clientBuckets) {
+                if (!bucket.isIdleSince(now, idleNanos)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private int route(HttpExchange exchange) {
+        if ("POST".equals(exchange.getRequestMethod()) && "/workorders".equals(exchange.getRequestURI().getPath())) {
+            return CREATE_ROUTE;
+        }
+        return DEFAULT_ROUTE;
+    }
+
+    private String clientKey(HttpExchange exchange) {
+        if (keyHeader != null) {
+            String key = exchange.getRequestHeaders().getFirst(keyHeader);
+            if (key != null && !key.isEmpty()) {
+                return "key:" + key;
+            }
+        }
+        return "ip:" + exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    private TokenBucket[] newBuckets() {
+        TokenBucket[] clientBuckets = new TokenBucket[limits.length];
+        for (int i = 0; i < limits.length; i++) {
+            clientBuckets[i] = new TokenBucket(limits[i]);
+        }
+        return clientBuckets;
+    }
+
+    /**
+     * Lock-free token bucket in its GCRA form: the whole state is one long, the
+     * "theoretical arrival time" at which the bucket would be full again. A
+     * request is admitted if that time is no more than (burst - 1) emission
+     * intervals in the future, and admitting it pushes the time forward by one
+     * interval with a single CAS.
+     */
+    static final class TokenBucket {
+
+        static final class Limit {
+            final int perSecond;
+            final long intervalNanos;
+            final long toleranceNanos;
+
+            Limit(int perSecond, int burst) {
+                this.perSecond = perSecond;
+                this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / perSecond;
+                this.toleranceNanos = intervalNanos * (burst - 1);
+            }
+        }
+
+        private final Limit limit;
+        private final AtomicLong fullAt;
+
+        TokenBucket(Limit limit) {
+            this.limit = limit;
+            this.fullAt = new AtomicLong(System.nanoTime());
+        }
+
+        /** Returns 0 if a token was taken, otherwise the nanoseconds until one is available. */
+        long tryAcquire(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long base = current - now > 0 ? current : now;
+                long wait = base - now - limit.toleranceNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (fullAt.compareAndSet(current, base + limit.intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean isIdleSince(long now, long idleNanos) {
+            return now - fullAt.get() > idleNanos;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Follower side of work order replication: keeps the local store a copy of
+ * the leader's and serves it read-only.
+ *
+ * On (re)connect the follower replaces its content with the leader's snapshot
+ * and then applies the mutation log in sequence order. A gap in the sequence
+ * drops the connection, which triggers a fresh snapshot. Lag is the number of
+ * mutations the leader has committed that are not applied here yet.
+ */
+final class ReplicationFollower {
+
+    private static final int RECONNECT_MILLIS = 1000;
+    private static final int METHOD_NOT_ALLOWED = 405;
+
+    private final WorkOrderStore store;
+    private final String leaderHost;
+    private final int leaderPort;
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile long leaderSequence;
+    private volatile long lastContactMillis;
+    private volatile Socket socket;
+
+    ReplicationFollower(WorkOrderStore store, String leaderHost, int leaderPort) {
+        this.store = store;
+        this.leaderHost = leaderHost;
+        this.leaderPort = leaderPort;
+    }
+
+    void start() {
+        running = true;
+        Thread thread = new Thread(this::run, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    /** Mutations committed on the leader but not yet applied here. */
+    long lag() {
+        return Math.max(0, leaderSequence - store.sequence());
+    }
+
+    String statusJson() {
+        long sinceContact = lastContactMillis == 0 ? -1 : System.currentTimeMillis() - lastContactMillis;
+        return "{\"role\":\"follower\",\"leader\":\"" + leaderHost + ":" + leaderPort + "\""
+            + ",\"connected\":" + connected
+            + ",\"sequence\":" + store.sequence()
+            + ",\"leaderSequence\":" + leaderSequence
+            + ",\"lag\":" + lag()
+            + ",\"millisSinceLeaderContact\":" + sinceContact + "}";
+    }
+
+    /** Serves GET /replication/status and rejects writes to the work order endpoints. */
+    Filter filter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (path.equals("/replication/status")) {
+                    WerkstattRESTServer.RequestHandler.sendJson(exchange, 200, statusJson());
+                    return;
+                }
+                String method = exchange.getRequestMethod();
+                if (path.startsWith("/workorders") && !method.equals("GET") && !method.equals("HEAD")) {
+                    exchange.getResponseHeaders().add("Allow", "GET");
+                    WerkstattRESTServer.RequestHandler.sendError(exchange, METHOD_NOT_ALLOWED,
+                        "Read-only replica", "Send writes to the leader (" + leaderHost + ")", path);
+                    return;
+                }
+                chain.doFilter(exchange);
+            }
+
+            @Override
+            public String description() {
+                return "replication-follower";
+            }
+        };
+    }
+
+    private void run() {
+        while (running) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.connect(new InetSocketAddress(leaderHost, leaderPort), 5000);
+                s.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                ReplicationProtocol.readHandshake(in);
+                connected = true;
+                follow(in);
+            } catch (IOException e) {
+                if (running && connected) {
+                    System.out.println("Replication: lost leader " + leaderHost + ":" + leaderPort
+                        + " (" + e.getMessage() + "), reconnecting");
+                }
+            } finally {
+                connected = false;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void follow(DataInputStream in) throws IOException {
+        while (running) {
+            byte type = in.readByte();
+            lastContactMillis = System.currentTimeMillis();
+            switch (type) {
+                case ReplicationProtocol.SNAPSHOT: {
+                    WorkOrderStore.Snapshot snapshot = ReplicationProtocol.readSnapshot(in);
+                    store.restore(snapshot);
+                    leaderSequence = snapshot.sequence;
+                    System.out.println("Replication: bootstrapped " + snapshot.orders.size()
+                        + " orders at sequence " + snapshot.sequence);
+                    break;
+                }
+                case ReplicationProtocol.MUTATION: {
+                    WorkOrderStore.Mutation mutation = ReplicationProtocol.readMutation(in);
+                    if (mutation.sequence != store.sequence() + 1) {
+                        throw new IOException("sequence gap: expected " + (store.sequence() + 1)
+                            + ", got " + mutation.sequence);
+                    }
+                    store.apply(mutation);
+                    leaderSequence = Math.max(leaderSequence, mutation.sequence);
+                    break;
+                }
+                case ReplicationProtocol.HEARTBEAT:
+                    leaderSequence = in.readLong();
+                    break;
+                default:
+                    throw new IOException("Unknown replication frame " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Leader side of work order replication.
+ *
+ * Every follower connection gets a snapshot of the store followed by the
+ * mutation log from that point on. The snapshot and the subscription are
+ * taken atomically by the store, so no mutation is lost or sent twice.
+ * A follower that falls more than MAX_QUEUED mutations behind is
+ * disconnected; it reconnects and bootstraps again from a fresh snapshot.
+ */
+final class ReplicationLeader {
+
+    private static final int MAX_QUEUED = 100_000;
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    private final WorkOrderStore store;
+    private final int port;
+    private final List<FollowerSession> sessions = new CopyOnWriteArrayList<>();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    ReplicationLeader(WorkOrderStore store, int port) {
+        this.store = store;
+        this.port = port;
+    }
+
+    void start() throws IOException {
+        serverSocket = new ServerSocket(port);
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "replication-leader");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        for (FollowerSession session : sessions) {
+            session.close();
+        }
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    int followerCount() {
+        return sessions.size();
+    }
+
+    String statusJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"role\":\"leader\",\"sequence\":").append(store.sequence()).append(",\"followers\":[");
+        boolean first = true;
+        for (FollowerSession session : sessions) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append("{\"address\":\"").append(session.address)
+                .append("\",\"sentSequence\":").append(session.sentSequence)
+                .append(",\"queued\":").append(session.queue.size()).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    /** Serves GET /replication/status. */
+    Filter filter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                if (exchange.getRequestURI().getPath().equals("/replication/status")) {
+                    WerkstattRESTServer.RequestHandler.sendJson(exchange, 200, statusJson());
+                    return;
+                }
+                chain.doFilter(exchange);
+            }
+
+            @Override
+            public String description() {
+                return "replication-leader";
+            }
+        };
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                FollowerSession session = new FollowerSession(socket);
+                sessions.add(session);
+                Thread thread = new Thread(session, "replication-session-" + session.address);
+                thread.setDaemon(true);
+                thread.start();
+            } catch (SocketException e) {
+                return; // server socket closed
+            } catch (IOException e) {
+                System.err.println("replication-leader: " + e);
+            }
+        }
+    }
+
+    private final class FollowerSession implements WorkOrderStore.Listener, Runnable {
+        final Socket socket;
+        final String address;
+        final BlockingQueue<WorkOrderStore.Mutation> queue = new LinkedBlockingQueue<>(MAX_QUEUED);
+        volatile long sentSequence;
+        volatile boolean overflowed;
+
+        FollowerSession(Socket socket) {
+            this.socket = socket;
+            this.address = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        }
+
+        // Called under the store lock: never block here
+        @Override
+        public void onMutation(WorkOrderStore.Mutation mutation) {
+            if (!queue.offer(mutation)) {
+                overflowed = true;
+            }
+        }
+
+        @Override
+        public void run() {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                ReplicationProtocol.writeHandshake(out);
+                WorkOrderStore.Snapshot snapshot = store.snapshotAndListen(this);
+                ReplicationProtocol.writeSnapshot(out, snapshot);
+                out.flush();
+                sentSequence = snapshot.sequence;
+                System.out.println("Replication: follower " + address + " bootstrapped at sequence " + sentSequence);
+
+                while (running) {
+                    WorkOrderStore.Mutation mutation = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (overflowed) {
+                        throw new IOException("follower too far behind, dropping it");
+                    }
+                    if (mutation == null) {
+                        ReplicationProtocol.writeHeartbeat(out, store.sequence());
+                        out.flush();
+                        continue;
+                    }
+                    ReplicationProtocol.writeMutation(out, mutation);
+                    sentSequence = mutation.sequence;
+                    // batch whatever is queued into one flush
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Replication: follower " + address + " disconnected (" + e.getMessage() + ")");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                store.removeListener(this);
+                sessions.remove(this);
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between replication leader and followers, over a plain TCP
+ * stream of DataOutputStream frames:
+ *
+ *   handshake  MAGIC (int), VERSION (int)                          leader -> follower
+ *   SNAPSHOT   'S', sequence (long), count (int), count x order
+ *   MUTATION   'M', sequence (long), type (byte), id (long), [order if PUT]
+ *   HEARTBEAT  'H', leader sequence (long)
+ *
+ *   order      id (long), licensePlate (UTF), description (UTF), status (byte), dueDate (int)
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x57524550; // "WREP"
+    static final int VERSION = 1;
+
+    static final byte SNAPSHOT = 'S';
+    static final byte MUTATION = 'M';
+    static final byte HEARTBEAT = 'H';
+
+    private static final byte PUT = 0;
+    private static final byte DELETE = 1;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeHandshake(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    static void readHandshake(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        int version = in.readInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("Unsupported replication stream (magic " + Integer.toHexString(magic)
+                + ", version " + version + ")");
+        }
+    }
+
+    static void writeSnapshot(DataOutputStream out, WorkOrderStore.Snapshot snapshot) throws IOException {
+        out.writeByte(SNAPSHOT);
+        out.writeLong(snapshot.sequence);
+        out.writeInt(snapshot.orders.size());
+        for (WorkOrder order : snapshot.orders) {
+            writeOrder(out, order);
+        }
+    }
+
+    static void writeMutation(DataOutputStream out, WorkOrderStore.Mutation mutation) throws IOException {
+        out.writeByte(MUTATION);
+        out.writeLong(mutation.sequence);
+        out.writeByte(mutation.type == WorkOrderStore.Mutation.Type.PUT ? PUT : DELETE);
+        out.writeLong(mutation.id);
+        if (mutation.type == WorkOrderStore.Mutation.Type.PUT) {
+            writeOrder(out, mutation.order);
+        }
+    }
+
+    static void writeHeartbeat(DataOutputStream out, long leaderSequence) throws IOException {
+        out.writeByte(HEARTBEAT);
+        out.writeLong(leaderSequence);
+    }
+
+    /** Reads the body of a SNAPSHOT frame, after its type byte. */
+    static WorkOrderStore.Snapshot readSnapshot(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        int count = in.readInt();
+        List<WorkOrder> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(readOrder(in));
+        }
+        return new WorkOrderStore.Snapshot(sequence, orders);
+    }
+
+    /** Reads the body of a MUTATION frame, after its type byte. */
+    static WorkOrderStore.Mutation readMutation(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        byte type = in.readByte();
+        long id = in.readLong();
+        if (type == PUT) {
+            return new WorkOrderStore.Mutation(sequence, WorkOrderStore.Mutation.Type.PUT, id, readOrder(in));
+        }
+        if (type == DELETE) {
+            return new WorkOrderStore.Mutation(sequence, WorkOrderStore.Mutation.Type.DELETE, id, null);
+        }
+        throw new IOException("Unknown mutation type " + type);
+    }
+
+    private static void writeOrder(DataOutputStream out, WorkOrder order) throws IOException {
+        out.writeLong(order.id);
+        out.writeUTF(order.licensePlate);
+        out.writeUTF(order.description);
+        out.writeByte(order.status.code);
+        out.writeInt(order.dueDate);
+    }
+
+    private static WorkOrder readOrder(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        String licensePlate = in.readUTF();
+        String description = in.readUTF();
+        WorkOrder.Status status = WorkOrder.Status.fromCode(in.readByte());
+        int dueDate = in.readInt();
+        return new WorkOrder(id, licensePlate, description, status, dueDate);
+    }
+}
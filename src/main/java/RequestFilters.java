@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Semaphore;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * The cross-cutting filters of the work order API, composed by
+ * WerkstattRESTServer into a FilterPipeline.
+ */
+final class RequestFilters {
+
+    private static final int BAD_REQUEST = 400;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private RequestFilters() {
+    }
+
+    /** Prints one line per request. */
+    static final class Logging extends Filter {
+        private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            String query = exchange.getRequestURI().getQuery();
+            System.out.println(MessageFormat.format("[{0}] {1} {2}",
+                LocalTime.now().format(TIME),
+                exchange.getRequestMethod(),
+                exchange.getRequestURI().getPath() + (query != null ? "?" + query : "")));
+            chain.doFilter(exchange);
+        }
+
+        @Override
+        public String description() {
+            return "logging";
+        }
+    }
+
+    /** Prints the status and the time spent in the rest of the chain. */
+    static final class Timing extends Filter {
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long start = System.nanoTime();
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                long micros = (System.nanoTime() - start) / 1_000;
+                System.out.println("  → " + exchange.getResponseCode() + " "
+                    + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+                    + " in " + micros / 1000 + "." + String.format("%03d", micros % 1000) + " ms");
+            }
+        }
+
+        @Override
+        public String description() {
+            return "timing";
+        }
+    }
+
+    /**
+     * Caps the number of requests being processed at once. Requests above the
+     * limit get an immediate 503 instead of queueing behind the others.
+     */
+    static final class ConcurrencyLimit extends Filter {
+        private final Semaphore permits;
+
+        ConcurrencyLimit(int maxConcurrentRequests) {
+            this.permits = new Semaphore(maxConcurrentRequests);
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (!permits.tryAcquire()) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.getResponseHeaders().add("Connection", "close");
+                WerkstattRESTServer.RequestHandler.sendError(exchange, SERVICE_UNAVAILABLE, "Server overloaded",
+                    "Too many concurrent requests, retry later", exchange.getRequestURI().getPath());
+                return;
+            }
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                permits.release();
+            }
+        }
+
+        @Override
+        public String description() {
+            return "concurrency-limit";
+        }
+    }
+
+    /**
+     * Rejects POST /workorders and PUT /workorders/{id} requests whose body is
+     * declared as neither JSON nor the binary encoding. Other paths and methods
+     * pass through, so they still get the handler's 404 or 405.
+     */
+    static final class BodyContentType extends Filter {
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (takesBody(exchange.getRequestMethod(), exchange.getRequestURI().getPath())) {
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                if (contentType == null
+                        || !contentType.contains("application/json") && !WorkOrderCodec.isBinary(contentType)) {
+                    WerkstattRESTServer.RequestHandler.sendError(exchange, BAD_REQUEST, "Invalid Content-Type",
+                        "Expected: application/json or " + WorkOrderCodec.MEDIA_TYPE, exchange.getRequestURI().getPath());
+                    return;
+                }
+            }
+            chain.doFilter(exchange);
+        }
+
+        @Override
+        public String description() {
+            return "content-type";
+        }
+
+        private static boolean takesBody(String method, String path) {
+            switch (method) {
+                case "POST":
+                    return path.equals("/workorders");
+                case "PUT":
+                    return path.matches("/workorders/\\d+");
+                default:
+                    return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Connection and request limits for the embedded HTTP server.
+ *
+ * Values are read from an optional properties file given with
+ * -Dwerkstatt.config=path/to/server.properties and can be overridden one by one
+ * with system properties of the same name, e.g. -Dwerkstatt.port=9090.
+ */
+final class ServerConfig {
+
+    static final String CONFIG_FILE_PROPERTY = "werkstatt.config";
+
+    final String engine;
+    final int nioEventLoops;
+    final int port;
+    final int backlog;
+    final int idleTimeoutSeconds;
+    final int requestTimeoutSeconds;
+    final int maxConnections;
+    final int maxConcurrentRequests;
+    final int maxBodyBytes;
+    final boolean rateLimitEnabled;
+    final String rateLimitKeyHeader;
+    final int rateLimitPerSecond;
+    final int rateLimitBurst;
+    final int createRateLimitPerSecond;
+    final int createRateLimitBurst;
+    final int rateLimitIdleSeconds;
+    final boolean loggingFilterEnabled;
+    final boolean timingFilterEnabled;
+    final int shutdownGraceSeconds;
+    final int shutdownDrainSeconds;
+    final String replicationRole;
+    final int replicationPort;
+    final String replicationLeader;
+    final int shardIndex;
+    final int shardCount;
+    final int shardBlockSize;
+    final List<String> routerShards;
+    final boolean remindersEnabled;
+    final int reminderLeadDays;
+    final int reminderCheckSeconds;
+    final String reminderWebhook;
+    final int bufferPoolBytesPerClass;
+    final boolean bufferPoolLeakDetection;
+    final int retainSequences;
+    final int idempotencyMaxEntries;
+    final int idempotencyTtlSeconds;
+
+    private ServerConfig(Properties props) {
+        this.engine = props.getProperty("werkstatt.engine", "jdk").trim();
+        this.nioEventLoops = getInt(props, "werkstatt.nio.eventLoops",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1);
+        this.port = getInt(props, "werkstatt.port", 8080, 0);
+        this.backlog = getInt(props, "werkstatt.backlog", 128, 1);
+        this.idleTimeoutSeconds = getInt(props, "werkstatt.keepAlive.idleSeconds", 30, 1);
+        this.requestTimeoutSeconds = getInt(props, "werkstatt.requestTimeoutSeconds", 30, 1);
+        this.maxConnections = getInt(props, "werkstatt.maxConnections", 256, 1);
+        this.maxConcurrentRequests = getInt(props, "werkstatt.maxConcurrentRequests", 64, 1);
+        this.maxBodyBytes = getInt(props, "werkstatt.maxBodyBytes", 64 * 1024, 0);
+        this.rateLimitEnabled = getBoolean(props, "werkstatt.rateLimit.enabled", true);
+        this.rateLimitKeyHeader = props.getProperty("werkstatt.rateLimit.keyHeader", "").trim();
+        this.rateLimitPerSecond = getInt(props, "werkstatt.rateLimit.perSecond", 50, 1);
+        this.rateLimitBurst = getInt(props, "werkstatt.rateLimit.burst", 100, 1);
+        this.createRateLimitPerSecond = getInt(props, "werkstatt.rateLimit.create.perSecond", 5, 1);
+        this.createRateLimitBurst = getInt(props, "werkstatt.rateLimit.create.burst", 20, 1);
+        this.rateLimitIdleSeconds = getInt(props, "werkstatt.rateLimit.idleSeconds", 300, 1);
+        this.loggingFilterEnabled = getBoolean(props, "werkstatt.filter.logging", true);
+        this.timingFilterEnabled = getBoolean(props, "werkstatt.filter.timing", false);
+        this.shutdownGraceSeconds = getInt(props, "werkstatt.shutdown.graceSeconds", 0, 0);
+        this.shutdownDrainSeconds = getInt(props, "werkstatt.shutdown.drainSeconds", 10, 0);
+        this.replicationRole = props.getProperty("werkstatt.replication.role", "none").trim();
+        this.replicationPort = getInt(props, "werkstatt.replication.port", 9090, 0);
+        this.replicationLeader = props.getProperty("werkstatt.replication.leader", "localhost:9090").trim();
+        this.shardIndex = getInt(props, "werkstatt.shard.index", 0, 0);
+        this.shardCount = getInt(props, "werkstatt.shard.count", 1, 1);
+        this.shardBlockSize = getInt(props, "werkstatt.shard.blockSize", 1000, 1);
+        this.routerShards = getList(props, "werkstatt.router.shards");
+        this.remindersEnabled = getBoolean(props, "werkstatt.reminders.enabled", true);
+        this.reminderLeadDays = getInt(props, "werkstatt.reminders.leadDays", 1, 0);
+        this.reminderCheckSeconds = getInt(props, "werkstatt.reminders.checkSeconds", 60, 1);
+        this.reminderWebhook = props.getProperty("werkstatt.reminders.webhook", "").trim();
+        this.bufferPoolBytesPerClass = getInt(props, "werkstatt.bufferPool.bytesPerClass", 1024 * 1024, 0);
+        this.bufferPoolLeakDetection = getBoolean(props, "werkstatt.bufferPool.leakDetection", false);
+        this.retainSequences = getInt(props, "werkstatt.store.retainSequences", 10_000, 0);
+        this.idempotencyMaxEntries = getInt(props, "werkstatt.idempotency.maxEntries", 10_000, 0);
+        this.idempotencyTtlSeconds = getInt(props, "werkstatt.idempotency.ttlSeconds", 24 * 60 * 60, 1);
+    }
+
+    static ServerConfig load() throws IOException {
+        Properties props = new Properties();
+        String file = System.getProperty(CONFIG_FILE_PROPERTY);
+        if (file != null) {
+            try (InputStream in = Files.newInputStream(Path.of(file))) {
+                props.load(in);
+            }
+        }
+        // system properties win over the file
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("werkstatt.")) {
+                props.setProperty(name, System.getProperty(name));
+            }
+        }
+        return new ServerConfig(props);
+    }
+
+    /**
+     * The JDK HttpServer reads its connection settings from system properties
+     * once, when the first server is created, so this must run before
+     * HttpServer.create().
+     */
+    void applyToJdkHttpServer() {
+        System.setProperty("sun.net.httpserver.idleInterval", String.valueOf(idleTimeoutSeconds));
+        System.setProperty("sun.net.httpserver.maxReqTime", String.valueOf(requestTimeoutSeconds));
+        System.setProperty("jdk.httpserver.maxConnections", String.valueOf(maxConnections));
+        // without this small responses wait for the client's delayed ACK (Nagle)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /** Id partitioning of a shard node; the router uses one shard per entry of routerShards. */
+    ShardLayout shardLayout() {
+        return new ShardLayout(routerShards.isEmpty() ? shardCount : routerShards.size(), shardBlockSize);
+    }
+
+    private static List<String> getList(Properties props, String key) {
+        List<String> values = new ArrayList<>();
+        for (String value : props.getProperty(key, "").split(",")) {
+            if (!value.isBlank()) {
+                values.add(value.trim());
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private static boolean getBoolean(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static int getInt(Properties props, String key, int defaultValue, int min) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed < min) {
+                throw new IllegalArgumentException(key + " must be >= " + min + ", was " + parsed);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " is not a number: " + value, e);
+        }
+    }
+}
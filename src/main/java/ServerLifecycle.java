@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Start/stop state of the server and graceful shutdown.
+ *
+ * shutdown() runs once, from the SIGTERM shutdown hook or from the console:
+ * the server first reports itself not ready (for the configured grace period,
+ * so load balancers stop routing to it), then rejects new requests with 503,
+ * waits for the in-flight ones up to the drain deadline, and finally runs the
+ * registered stop tasks in registration order (stop the server, flush
+ * buffers, shut down executors).
+ *
+ * The filter returned by {@link #filter()} must be the first in the pipeline:
+ * it counts in-flight requests and answers the health endpoints
+ * /health/live and /health/ready.
+ */
+final class ServerLifecycle {
+
+    enum State { STARTING, READY, DRAINING, STOPPED }
+
+    private static final int OK = 200;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final long graceMillis;
+    private final long drainMillis;
+    private final AtomicReference<State> state = new AtomicReference<>(State.STARTING);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final Map<String, Runnable> stopTasks = new LinkedHashMap<>();
+    private volatile boolean acceptingRequests = true;
+
+    ServerLifecycle(ServerConfig config) {
+        this.graceMillis = TimeUnit.SECONDS.toMillis(config.shutdownGraceSeconds);
+        this.drainMillis = TimeUnit.SECONDS.toMillis(config.shutdownDrainSeconds);
+    }
+
+    State state() {
+        return state.get();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /** Registers a task to run after draining; tasks run in registration order. */
+    synchronized void onStop(String name, Runnable task) {
+        stopTasks.put(name, task);
+    }
+
+    void markReady() {
+        state.compareAndSet(State.STARTING, State.READY);
+    }
+
+    /** Installs the JVM shutdown hook so SIGTERM/SIGINT drain the server. */
+    void installShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "werkstatt-shutdown"));
+    }
+
+    void awaitTermination() throws InterruptedException {
+        stopped.await();
+    }
+
+    void shutdown() {
+        State previous = state.getAndUpdate(s -> s == State.STOPPED ? s : State.DRAINING);
+        if (previous == State.DRAINING || previous == State.STOPPED) {
+            // already shutting down, wait for whoever started it
+            try {
+                stopped.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        System.out.println("Shutdown: not ready, draining " + inFlight.get() + " in-flight requests...");
+        boolean interrupted = !sleepQuietly(graceMillis);
+        acceptingRequests = false;
+
+        long deadline = System.currentTimeMillis() + drainMillis;
+        while (!interrupted && inFlight.get() > 0 && System.currentTimeMillis() < deadline) {
+            interrupted = !sleepQuietly(10);
+        }
+        if (interrupted) {
+            System.out.println("Shutdown: interrupted, stopping with " + inFlight.get() + " requests still running");
+        } else if (inFlight.get() > 0) {
+            System.out.println("Shutdown: drain deadline reached, " + inFlight.get() + " requests still running");
+        }
+
+        List<Map.Entry<String, Runnable>> tasks;
+        synchronized (this) {
+            tasks = new ArrayList<>(stopTasks.entrySet());
+        }
+        for (Map.Entry<String, Runnable> task : tasks) {
+            try {
+                task.getValue().run();
+            } catch (RuntimeException e) {
+                System.err.println("Shutdown: " + task.getKey() + " failed: " + e);
+            }
+        }
+
+        state.set(State.STOPPED);
+        stopped.countDown();
+    }
+
+    Filter filter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (path.startsWith("/health/")) {
+                    handleHealth(exchange, path);
+                    return;
+                }
+
+                // count first, then check, so shutdown never misses a request it let through
+                inFlight.incrementAndGet();
+                try {
+                    if (!acceptingRequests) {
+                        exchange.getResponseHeaders().add("Connection", "close");
+                        exchange.getResponseHeaders().add("Retry-After", "1");
+                        WerkstattRESTServer.RequestHandler.sendError(exchange, SERVICE_UNAVAILABLE,
+                            "Server shutting down", "Retry against another instance", path);
+                        return;
+                    }
+                    chain.doFilter(exchange);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+
+            @Override
+            public String description() {
+                return "lifecycle";
+            }
+        };
+    }
+
+    private void handleHealth(HttpExchange exchange, String path) throws IOException {
+        State current = state.get();
+        boolean up;
+        if (path.equals("/health/live")) {
+            up = current != State.STOPPED;
+        } else if (path.equals("/health/ready")) {
+            up = current == State.READY;
+        } else {
+            WerkstattRESTServer.RequestHandler.sendError(exchange, 404, "Endpoint not found",
+                "Available health endpoints: /health/live, /health/ready", path);
+            return;
+        }
+        WerkstattRESTServer.RequestHandler.sendJson(exchange, up ? OK : SERVICE_UNAVAILABLE,
+            "{\"status\":\"" + current + "\",\"inFlight\":" + inFlight.get() + "}");
+    }
+
+    // false if interrupted; the flag is restored for the stop tasks, so callers must stop waiting
+    private static boolean sleepQuietly(long millis) {
+        if (millis <= 0) {
+            return !Thread.currentThread().isInterrupted();
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * How work order ids are partitioned across shards.
+ *
+ * The id space is cut into blocks of blockSize ids, dealt out round-robin:
+ * block k belongs to shard k % shards. Each node numbers its own orders
+ * 0, 1, 2, ... and {@link #idAt} turns that ordinal into an id inside one of
+ * its blocks, so nodes never coordinate and the router finds the owner of an
+ * id with {@link #ownerOf} alone. With one shard the ids are 1, 2, 3, ...
+ * exactly as before sharding.
+ */
+final class ShardLayout {
+
+    static final ShardLayout SINGLE = new ShardLayout(1, 1);
+
+    final int shards;
+    final int blockSize;
+
+    ShardLayout(int shards, int blockSize) {
+        if (shards < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("shards and blockSize must be >= 1");
+        }
+        this.shards = shards;
+        this.blockSize = blockSize;
+    }
+
+    /** The shard owning an id; ids below 1 are never handed out and map to shard 0. */
+    int ownerOf(long id) {
+        if (id < 1) {
+            return 0;
+        }
+        return (int) (((id - 1) / blockSize) % shards);
+    }
+
+    /** The id a shard hands out as its ordinal-th order (0-based). */
+    long idAt(int shard, long ordinal) {
+        long block = ordinal / blockSize;
+        return (block * shards + shard) * blockSize + ordinal % blockSize + 1;
+    }
+
+    /** Inverse of {@link #idAt}, for an id of the shard that owns it. */
+    long ordinalOf(long id) {
+        long block = (id - 1) / blockSize;
+        return block / shards * blockSize + (id - 1) % blockSize;
+    }
+
+    void checkShard(int shard) {
+        if (shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("shard index " + shard + " out of range 0.." + (shards - 1));
+        }
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Routing front for a sharded cluster; holds no work orders itself.
+ *
+ * Requests for /workorders/{id} go to the shard owning the id (see
+ * {@link ShardLayout}), POST /workorders is spread round-robin so every node
+ * takes writes, and GET /workorders is sent to all shards in parallel with the
+ * same query. A POST with an Idempotency-Key goes to the shard picked by the
+ * key's hash instead, so a retry reaches the shard that cached the response.
+ * Shards apply filters and the limit themselves; the router merges their
+ * results by id and applies the limit once more. With explain=true it returns
+ * the query plans of all shards instead.
+ *
+ * The router is stateless, so several can run side by side.
+ */
+final class ShardRouter implements HttpHandler {
+
+    private static final int BAD_REQUEST = 400;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int BAD_GATEWAY = 502;
+    private static final int GATEWAY_TIMEOUT = 504;
+
+    // not forwarded in either direction; the JDK client sets most of these itself
+    private static final Set<String> HOP_BY_HOP = Set.of(
+        "connection", "content-length", "expect", "host", "keep-alive", "proxy-authenticate",
+        "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade");
+
+    private final ShardLayout layout;
+    private final List<URI> shards;
+    private final int maxBodyBytes;
+    private final Duration timeout;
+    private final ExecutorService clientExecutor = Executors.newCachedThreadPool();
+    private final HttpClient client;
+    private final AtomicInteger nextWriteShard = new AtomicInteger();
+
+    ShardRouter(ServerConfig config) {
+        this.layout = config.shardLayout();
+        this.shards = new ArrayList<>();
+        for (String shard : config.routerShards) {
+            shards.add(URI.create(shard.contains("://") ? shard : "http://" + shard));
+        }
+        this.maxBodyBytes = config.maxBodyBytes;
+        this.timeout = Duration.ofSeconds(config.requestTimeoutSeconds);
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .executor(clientExecutor)
+            .build();
+    }
+
+    int shardCount() {
+        return shards.size();
+    }
+
+    String describe() {
+        return shards.size() + " shards " + shards + ", id blocks of " + layout.blockSize;
+    }
+
+    void close() {
+        clientExecutor.shutdownNow();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+
+        byte[] body;
+        try (BufferPool.Lease lease = WerkstattRESTServer.RequestHandler.readBody(exchange, maxBodyBytes)) {
+            if (lease == null) {
+                exchange.getResponseHeaders().add("Connection", "close");
+                WerkstattRESTServer.RequestHandler.sendError(exchange, PAYLOAD_TOO_LARGE, "Payload too large",
+                    "Request body must not exceed " + maxBodyBytes + " bytes", path);
+                return;
+            }
+            // the client may still be sending the body after a timeout, so it gets its own copy
+            body = Arrays.copyOf(lease.array, lease.length);
+        }
+
+        try {
+            if (path.equals("/workorders") && method.equals("GET")) {
+                scatterGather(exchange);
+            } else if (path.equals("/workorders") && method.equals("POST")) {
+                forward(exchange, writeShard(exchange), body);
+            } else if (path.matches("/workorders/\\d+")) {
+                forward(exchange, layout.ownerOf(parseId(path)), body);
+            } else {
+                // shard 0 answers 404/405 like a single node would
+                forward(exchange, 0, body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for a shard", e);
+        }
+    }
+
+    // String.hashCode is specified, so every router picks the same shard for a key
+    private int writeShard(HttpExchange exchange) {
+        String key = exchange.getRequestHeaders().getFirst(IdempotencyCache.HEADER);
+        int hash = key != null ? key.hashCode() : nextWriteShard.getAndIncrement();
+        return Math.floorMod(hash, shards.size());
+    }
+
+    private void forward(HttpExchange exchange, int shard, byte[] body) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request(exchange, shard, body).build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            sendShardError(exchange, shard, e);
+            return;
+        }
+        copyHeaders(response.headers().map(), exchange.getResponseHeaders());
+        exchange.getResponseHeaders().set("X-Shard", String.valueOf(shard));
+        byte[] responseBody = response.body();
+        exchange.sendResponseHeaders(response.statusCode(), responseBody.length == 0 ? -1 : responseBody.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBody);
+        }
+    }
+
+    private void scatterGather(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getQuery();
+        boolean explain = "true".equals(param(query, "explain"));
+        if (param(query, "asOf") != null) {
+            // every shard numbers its own writes, one sequence names no state of the cluster
+            WerkstattRESTServer.RequestHandler.sendError(exchange, BAD_REQUEST, "Invalid asOf",
+                "asOf is not supported across shards, query a shard directly", "/workorders");
+            return;
+        }
+        StringBuilder plans = new StringBuilder("{\"shards\":[");
+
+        // shards answer in the binary encoding whatever the client asked for, it is cheaper to merge
+        List<CompletableFuture<HttpResponse<InputStream>>> pending = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            HttpRequest request = request(exchange, shard, new byte[0])
+                .setHeader("Accept", WorkOrderCodec.MEDIA_TYPE)
+                .build();
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()));
+        }
+
+        List<WorkOrder> orders = new ArrayList<>();
+        for (int shard = 0; shard < pending.size(); shard++) {
+            HttpResponse<InputStream> response;
+            try {
+                response = pending.get(shard).join();
+            } catch (CompletionException e) {
+                cancel(pending);
+                sendShardError(exchange, shard, e.getCause());
+                return;
+            }
+            try (InputStream in = response.body()) {
+                if (response.statusCode() != 200) {
+                    // e.g. 400 for an invalid limit: every shard says the same, pass the first on
+                    cancel(pending);
+                    WerkstattRESTServer.RequestHandler.sendJson(exchange, response.statusCode(),
+                        new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                    return;
+                }
+                if (explain) {
+                    // each shard plans for its own data; show every plan
+                    plans.append(shard > 0 ? "," : "").append(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                    continue;
+                }
+                WorkOrderCodec.Reader reader = new WorkOrderCodec.Reader(in);
+                for (WorkOrder order = reader.nextListItem(); order != null; order = reader.nextListItem()) {
+                    orders.add(order);
+                }
+            } catch (IOException e) {
+                cancel(pending);
+                sendShardError(exchange, shard, e);
+                return;
+            }
+        }
+
+        if (explain) {
+            WerkstattRESTServer.RequestHandler.sendJson(exchange, 200, plans.append("]}"));
+            return;
+        }
+
+        // shards already rejected an invalid limit or fields parameter
+        String limitParam = param(query, "limit");
+        String fieldsParam = param(query, "fields");
+        int limit = limitParam != null ? Integer.parseInt(limitParam) : Integer.MAX_VALUE;
+        WorkOrderProjection projection = fieldsParam != null
+            ? WorkOrderProjection.parse(fieldsParam)
+            : WorkOrderProjection.ALL;
+
+        orders.sort(Comparator.comparingLong(order -> order.id));
+        WerkstattRESTServer.RequestHandler.sendOrders(exchange,
+            limit < orders.size() ? orders.subList(0, limit) : orders, projection);
+    }
+
+    // gives up on the other shards, closing bodies that already arrived so their connections are freed
+    private static void cancel(List<CompletableFuture<HttpResponse<InputStream>>> pending) {
+        for (CompletableFuture<HttpResponse<InputStream>> future : pending) {
+            if (!future.cancel(true) && !future.isCompletedExceptionally()) {
+                try {
+                    future.join().body().close();
+                } catch (IOException e) {
+                    // nothing left to free
+                }
+            }
+        }
+    }
+
+    private HttpRequest.Builder request(HttpExchange exchange, int shard, byte[] body) {
+        URI incoming = exchange.getRequestURI();
+        String target = incoming.getRawPath() + (incoming.getRawQuery() != null ? "?" + incoming.getRawQuery() : "");
+        HttpRequest.Builder builder = HttpRequest.newBuilder(shards.get(shard).resolve(target))
+            .timeout(timeout)
+            .method(exchange.getRequestMethod(), body.length == 0
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body));
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+            // a client's own X-Forwarded-For is not passed on, it could name any address
+            if (!HOP_BY_HOP.contains(name) && !name.equals("x-forwarded-for")) {
+                for (String value : header.getValue()) {
+                    builder.header(header.getKey(), value);
+                }
+            }
+        }
+        // the only X-Forwarded-For the shard sees, so it can rate limit by client
+        // with werkstatt.rateLimit.keyHeader=X-Forwarded-For
+        builder.header("X-Forwarded-For", exchange.getRemoteAddress().getAddress().getHostAddress());
+        return builder;
+    }
+
+    private static void copyHeaders(Map<String, List<String>> from, Headers to) {
+        for (Map.Entry<String, List<String>> header : from.entrySet()) {
+            if (!header.getKey().startsWith(":") && !HOP_BY_HOP.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                to.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+        }
+    }
+
+    private void sendShardError(HttpExchange exchange, int shard, Throwable cause) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (cause instanceof HttpTimeoutException) {
+            WerkstattRESTServer.RequestHandler.sendError(exchange, GATEWAY_TIMEOUT, "Shard timeout",
+                "Shard " + shard + " did not answer within " + timeout.toSeconds() + "s", path);
+        } else {
+            String reason = cause instanceof ConnectException ? "is not reachable" : "failed: " + cause;
+            WerkstattRESTServer.RequestHandler.sendError(exchange, BAD_GATEWAY, "Shard unavailable",
+                "Shard " + shard + " (" + shards.get(shard) + ") " + reason, path);
+        }
+    }
+
+    private static long parseId(String path) {
+        try {
+            return Long.parseLong(path.substring(path.lastIndexOf('/') + 1));
+        } catch (NumberFormatException e) {
+            return 0; // too long for a long, shard 0 answers 400/404
+        }
+    }
+
+    private static String param(String query, String name) {
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith(name + "=")) {
+                    return param.substring(name.length() + 1);
+                }
+            }
+        }
+        return null;
+    }
+}
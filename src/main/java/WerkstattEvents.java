@@ -0,0 +1,280 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of the work order API: one per request, store
+ * access, rejected input and encoded response.
+ *
+ * All are disabled by default. A disabled event costs the check of a flag and
+ * the JIT removes the unused event object, so nothing is timed, counted or
+ * allocated unless a recording turns them on, e.g. with the bundled profile:
+ *
+ *   java -XX:StartFlightRecording:settings=src/main/resources/werkstatt.jfc,filename=werkstatt.jfr ...
+ *
+ * Events nest by time on the handler thread: a Request contains the store
+ * accesses and the Serialization of its response.
+ *
+ * A recording may start between start() and finish(). Such an event was never
+ * begun, so finish() drops it: each one checks a field only start() sets.
+ */
+final class WerkstattEvents {
+
+    private WerkstattEvents() {
+    }
+
+    /** "/workorders/{id}" for item paths, so requests group by route rather than by id. */
+    static String route(String path) {
+        return path.matches("/workorders/\\d+") ? "/workorders/{id}" : path;
+    }
+
+    @Name("werkstatt.Request")
+    @Label("Request")
+    @Category({"Werkstatt", "HTTP"})
+    @Description("A request in RequestHandler, from reading the body to the last response byte")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Request extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("Route")
+        String route;
+
+        @Label("Status")
+        int status;
+
+        @Label("Request Bytes")
+        @DataAmount
+        long requestBytes;
+
+        @Label("Response Bytes")
+        @DataAmount
+        long responseBytes;
+
+        private transient CountingOutputStream response;
+
+        /** Starts timing and counts what the handler writes; does nothing while disabled. */
+        static Request start(HttpExchange exchange) {
+            Request event = new Request();
+            if (event.isEnabled()) {
+                event.method = exchange.getRequestMethod();
+                event.route = route(exchange.getRequestURI().getPath());
+                event.response = new CountingOutputStream(exchange.getResponseBody());
+                exchange.setStreams(null, event.response);
+                event.begin();
+            }
+            return event;
+        }
+
+        // requestBytes -1 if the body was rejected unread
+        void finish(HttpExchange exchange, long requestBytes) {
+            if (response != null && shouldCommit()) {
+                this.status = exchange.getResponseCode();
+                this.requestBytes = requestBytes;
+                this.responseBytes = response.count;
+                commit();
+            }
+        }
+    }
+
+    @Name("werkstatt.StoreRead")
+    @Label("Store Read")
+    @Category({"Werkstatt", "Store"})
+    @Description("A lookup by id or a query against the work order store")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class StoreRead extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Strategy")
+        @Description("How a query found its orders, see ?explain=true")
+        String strategy;
+
+        @Label("Examined")
+        long examined;
+
+        @Label("Matched")
+        long matched;
+
+        static StoreRead start(String operation) {
+            StoreRead event = new StoreRead();
+            if (event.isEnabled()) {
+                event.operation = operation;
+                event.begin();
+            }
+            return event;
+        }
+
+        void finish(String strategy, long examined, long matched) {
+            if (operation != null && shouldCommit()) {
+                this.strategy = strategy;
+                this.examined = examined;
+                this.matched = matched;
+                commit();
+            }
+        }
+    }
+
+    @Name("werkstatt.StoreWrite")
+    @Label("Store Write")
+    @Category({"Werkstatt", "Store"})
+    @Description("A create, update, delete or replicated change, including the wait for the store lock")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class StoreWrite extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Work Order Id")
+        long id;
+
+        @Label("Applied")
+        @Description("False if the order did not exist")
+        boolean applied;
+
+        @Label("Lock Wait")
+        @Timespan
+        long lockWait;
+
+        /** Call before taking the store lock. */
+        static StoreWrite start(String operation) {
+            StoreWrite event = new StoreWrite();
+            if (event.isEnabled()) {
+                event.operation = operation;
+                event.begin();
+                event.lockWait = System.nanoTime();
+            }
+            return event;
+        }
+
+        /** Call first thing under the store lock. */
+        void locked() {
+            if (operation != null) {
+                lockWait = System.nanoTime() - lockWait;
+            }
+        }
+
+        void finish(long id, boolean applied) {
+            if (operation != null && shouldCommit()) {
+                this.id = id;
+                this.applied = applied;
+                commit();
+            }
+        }
+    }
+
+    @Name("werkstatt.ValidationFailure")
+    @Label("Validation Failure")
+    @Category({"Werkstatt", "HTTP"})
+    @Description("A request rejected with 400 because of its body or parameters")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ValidationFailure extends Event {
+        @Label("Route")
+        String route;
+
+        @Label("Message")
+        String message;
+
+        @Label("Detail")
+        String detail;
+
+        static void emit(String path, String message, String detail) {
+            ValidationFailure event = new ValidationFailure();
+            if (event.isEnabled()) {
+                event.route = route(path);
+                event.message = message;
+                event.detail = detail;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("werkstatt.Serialization")
+    @Label("Serialization")
+    @Category({"Werkstatt", "HTTP"})
+    @Description("Encoding work orders for a response; a streamed binary list includes writing it")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Serialization extends Event {
+        @Label("Format")
+        String format;
+
+        @Label("Orders")
+        int orders;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        private transient CountingOutputStream counter;
+
+        static Serialization start(String format, int orders) {
+            Serialization event = new Serialization();
+            if (event.isEnabled()) {
+                event.format = format;
+                event.orders = orders;
+                event.begin();
+            }
+            return event;
+        }
+
+        /** For streamed output: the stream to write to, counting while enabled. */
+        OutputStream count(OutputStream out) {
+            if (format == null) {
+                return out;
+            }
+            counter = new CountingOutputStream(out);
+            return counter;
+        }
+
+        void finish(long bytes) {
+            if (format != null && shouldCommit()) {
+                this.bytes = bytes;
+                commit();
+            }
+        }
+
+        /** For streamed output, after the last write. */
+        void finish() {
+            if (counter != null && shouldCommit()) {
+                this.bytes = counter.count;
+                commit();
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -1,112 +1,230 @@
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.InetSocketAddress;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.text.MessageFormat;
-import java.time.LocalDate;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.format.DateTimeParseException;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import com.sun.net.httpserver.HttpServer;
 
 public class WerkstattRESTServer {
 
-    private static final int PORT = 8080;
-
-    // Simulate a database in the ram
-    private static final Map<Long, WorkOrder> DATABASE = Collections.synchronizedMap(new HashMap<>());
-    private static final AtomicLong ID_GENERATOR = new AtomicLong(1);
-
     public static void main(String[] args) {
         try {
-            // test data
-            initDummyData();
+            ServerConfig config = ServerConfig.load();
+
+            ServerLifecycle lifecycle = new ServerLifecycle(config);
+            BufferPool.install(new BufferPool(config.bufferPoolBytesPerClass, config.bufferPoolLeakDetection));
 
-            HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
-            HttpContext context = server.createContext("/");
-            context.setHandler(new RequestHandler());
+            // a router forwards to the shards and has no store of its own
+            ShardRouter router = config.routerShards.isEmpty() ? null : new ShardRouter(config);
+            WorkOrderStore store = router != null ? null : new WorkOrderStore(config.shardLayout(), config.shardIndex,
+                config.retainSequences);
+            if (router != null && !config.replicationRole.equals("none")) {
+                throw new IllegalArgumentException("werkstatt.replication.role must be none on a router");
+            }
+
+            ReplicationLeader replicationLeader = null;
+            ReplicationFollower replicationFollower = null;
+            switch (config.replicationRole) {
+                case "leader":
+                    replicationLeader = new ReplicationLeader(store, config.replicationPort);
+                    break;
+                case "follower":
+                    int colon = config.replicationLeader.lastIndexOf(':');
+                    replicationFollower = new ReplicationFollower(store,
+                        config.replicationLeader.substring(0, colon),
+                        Integer.parseInt(config.replicationLeader.substring(colon + 1)));
+                    break;
+                case "none":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown werkstatt.replication.role: " + config.replicationRole);
+            }
+
+            // test data, followers get theirs from the leader
+            if (store != null && replicationFollower == null && config.shardCount == 1) {
+                initDummyData(store);
+            }
+
+            // followers would repeat the leader's reminders
+            DueDateScheduler reminders = null;
+            DueDateScheduler.WebhookSink webhook = null;
+            if (store != null && replicationFollower == null && config.remindersEnabled) {
+                DueDateScheduler.Sink sink = new DueDateScheduler.LogSink();
+                if (!config.reminderWebhook.isEmpty()) {
+                    webhook = new DueDateScheduler.WebhookSink(config.reminderWebhook,
+                        Duration.ofSeconds(config.requestTimeoutSeconds));
+                    sink = webhook;
+                }
+                reminders = new DueDateScheduler(store, Clock.systemDefaultZone(), config.reminderLeadDays, sink);
+            }
 
-            server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
-            server.start();
+            FilterPipeline.Builder filters = FilterPipeline.builder()
+                .add(lifecycle.filter())
+                .addIf(config.loggingFilterEnabled, new RequestFilters.Logging())
+                .addIf(config.timingFilterEnabled, new RequestFilters.Timing())
+                .addIf(config.rateLimitEnabled, new RateLimitFilter(config))
+                .add(new RequestFilters.ConcurrencyLimit(config.maxConcurrentRequests));
+            // endpoints of optional components, logged and limited like the API itself
+            if (reminders != null) {
+                filters.add(reminders.filter());
+            }
+            if (replicationLeader != null) {
+                filters.add(replicationLeader.filter());
+            }
+            if (replicationFollower != null) {
+                filters.add(replicationFollower.filter());
+            }
+            FilterPipeline pipeline = filters
+                .add(new RequestFilters.BodyContentType())
+                .build(router != null ? router : new RequestHandler(config, store));
+
+            ExecutorService executor = Executors.newCachedThreadPool();
+            HttpEngine engine = HttpEngine.create(config, pipeline, executor);
+            engine.start();
+            if (replicationLeader != null) {
+                replicationLeader.start();
+            }
+            if (replicationFollower != null) {
+                replicationFollower.start();
+            }
+            if (reminders != null) {
+                reminders.start(config.reminderCheckSeconds);
+            }
+
+            lifecycle.onStop("http server", engine::stop);
+            if (replicationLeader != null) {
+                lifecycle.onStop("replication", replicationLeader::stop);
+            }
+            if (replicationFollower != null) {
+                lifecycle.onStop("replication", replicationFollower::stop);
+            }
+            if (router != null) {
+                lifecycle.onStop("shard client", router::close);
+            }
+            if (reminders != null) {
+                lifecycle.onStop("reminders", reminders::stop);
+            }
+            if (webhook != null) {
+                lifecycle.onStop("reminder webhook", webhook::close);
+            }
+            lifecycle.onStop("executor", () -> {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            if (config.bufferPoolLeakDetection) {
+                lifecycle.onStop("buffer leaks", () -> {
+                    List<Throwable> leaks = BufferPool.shared().leaks();
+                    System.out.println("BufferPool: " + leaks.size() + " buffers not released");
+                    leaks.forEach(Throwable::printStackTrace);
+                });
+            }
+            lifecycle.onStop("flush logs", () -> {
+                System.out.flush();
+                System.err.flush();
+            });
+            lifecycle.installShutdownHook();
+            lifecycle.markReady();
 
             System.out.println("=".repeat(60));
             System.out.println("Werkstatt API Server gestartet");
             System.out.println("=".repeat(60));
-            System.out.println("Port:      " + PORT);
-            System.out.println("Base URL:  http://localhost:" + PORT);
+            System.out.println("Engine:    " + engine.name());
+            System.out.println("Port:      " + engine.port());
+            System.out.println("Base URL:  http://localhost:" + engine.port());
+            System.out.println("Limits:    " + config.maxConcurrentRequests + " concurrent requests, "
+                + config.maxBodyBytes + " bytes body, " + config.maxConnections + " connections, "
+                + config.idleTimeoutSeconds + "s keep-alive");
+            System.out.println("Rate limit: " + (config.rateLimitEnabled
+                ? config.rateLimitPerSecond + "/s per client, POST /workorders " + config.createRateLimitPerSecond + "/s"
+                : "off"));
+            if (store != null) {
+                System.out.println("Idempotency: " + (config.idempotencyMaxEntries > 0
+                    ? IdempotencyCache.HEADER + " on POST /workorders, " + config.idempotencyMaxEntries
+                        + " keys for " + config.idempotencyTtlSeconds + "s"
+                    : "off"));
+            }
+            System.out.println("Filters:   " + pipeline.describe());
+            if (replicationLeader != null) {
+                System.out.println("Replication: leader, followers connect to port " + replicationLeader.port());
+            } else if (replicationFollower != null) {
+                System.out.println("Replication: read-only follower of " + config.replicationLeader);
+            }
+            if (reminders != null) {
+                System.out.println("Reminders: " + config.reminderLeadDays + " day(s) before due date, "
+                    + (webhook != null ? "webhook " + config.reminderWebhook : "log only"));
+            }
+            if (router != null) {
+                System.out.println("Routing:   " + router.describe());
+            } else if (config.shardCount > 1) {
+                System.out.println("Sharding:  shard " + config.shardIndex + " of " + config.shardCount
+                    + ", id blocks of " + config.shardBlockSize);
+            }
             System.out.println("\nEndpoints:");
             System.out.println("  GET    /workorders           - Liste aller Aufträge");
             System.out.println("  POST   /workorders           - Neuen Auftrag erstellen");
             System.out.println("  GET    /workorders/{id}      - Auftrag abrufen");
             System.out.println("  PUT    /workorders/{id}      - Auftrag aktualisieren");
             System.out.println("  DELETE /workorders/{id}      - Auftrag löschen");
+            System.out.println("  GET    /health/live          - Liveness");
+            System.out.println("  GET    /health/ready         - Readiness");
+            System.out.println("  GET    /replication/status   - Replikationsstatus (nur mit Replikation)");
+            System.out.println("  GET    /reminders            - Fälligkeitserinnerungen");
             System.out.println("\nQuery-Parameter (GET /workorders):");
             System.out.println("  ?status=PENDING");
             System.out.println("  ?licensePlate=SB-XY-123");
             System.out.println("  ?dueDate=2025-10-15");
+            System.out.println("  ?limit=50");
+            System.out.println("  ?asOf=42              (Stand nach Sequenz 42, siehe X-Sequence)");
             System.out.println("=".repeat(60));
-            System.out.println("\nDrücke ENTER zum Beenden...\n");
+            System.out.println("\nDrücke ENTER oder sende SIGTERM zum Beenden...\n");
+
+            // Interactive stop; as a daemon stdin is at EOF and only SIGTERM stops the server
+            Thread console = new Thread(() -> {
+                Scanner sc = new Scanner(System.in);
+                if (sc.hasNextLine()) {
+                    sc.nextLine();
+                    lifecycle.shutdown();
+                }
+            }, "console");
+            console.setDaemon(true);
+            console.start();
 
-            Scanner sc = new Scanner(System.in);
-            sc.nextLine();
-            sc.close();
-            server.stop(0);
+            lifecycle.awaitTermination();
             System.out.println("Web-Server gestoppt.");
         } catch (IOException e) {
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private static void initDummyData() {
-        createOrder("SB-XY-123", "Bremsscheiben wechseln", "PENDING", "2025-10-15");
-        createOrder("KL-AA-007", "Ölwechsel", "IN_PROGRESS", "2025-09-01");
-        createOrder("SB-BB-999", "TÜV Hauptuntersuchung", "PENDING", "2025-12-20");
-        createOrder("SB-XY-123", "Klimaanlage prüfen", "COMPLETED", "2025-08-10");
+    private static void initDummyData(WorkOrderStore store) {
+        createOrder(store, "SB-XY-123", "Bremsscheiben wechseln", "PENDING", "2025-10-15");
+        createOrder(store, "KL-AA-007", "Ölwechsel", "IN_PROGRESS", "2025-09-01");
+        createOrder(store, "SB-BB-999", "TÜV Hauptuntersuchung", "PENDING", "2025-12-20");
+        createOrder(store, "SB-XY-123", "Klimaanlage prüfen", "COMPLETED", "2025-08-10");
     }
 
-    private static WorkOrder createOrder(String lp, String desc, String status, String due) {
-        long id = ID_GENERATOR.getAndIncrement();
-        WorkOrder wo = new WorkOrder(id, lp, desc, status, due);
-        DATABASE.put(id, wo);
-        return wo;
-    }
-
-    // --- MODEL CLASS (POJO) ---
-    static class WorkOrder {
-        long id;
-        String licensePlate;
-        String description;
-        String status;
-        String dueDate;
-
-        public WorkOrder(long id, String licensePlate, String description, String status, String dueDate) {
-            this.id = id;
-            this.licensePlate = licensePlate;
-            this.description = description;
-            this.status = status;
-            this.dueDate = dueDate;
-        }
-
-        public String toJson() {
-            return String.format(
-                "{\"id\":%d,\"licensePlate\":\"%s\",\"description\":\"%s\",\"status\":\"%s\",\"dueDate\":\"%s\"}",
-                id, escapedJson(licensePlate), escapedJson(description), status, dueDate
-            );
-        }
-
-        private String escapedJson(String str) {
-            return str.replace("\\", "\\\\").replace("\"", "\\\"");
-        }
+    private static WorkOrder createOrder(WorkOrderStore store, String lp, String desc, String status, String due) {
+        return store.create(lp, desc, WorkOrder.Status.parse(status), WorkOrder.parseDueDate(due));
     }
 
     // --- MAIN HANDLER ---
@@ -119,20 +237,51 @@ public class WerkstattRESTServer {
         private static final int BAD_REQUEST = 400;
         private static final int NOT_FOUND = 404;
         private static final int METHOD_NOT_ALLOWED = 405;
+        private static final int GONE = 410;
+        private static final int PAYLOAD_TOO_LARGE = 413;
+        private static final int UNPROCESSABLE_ENTITY = 422;
+
+        private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+        private static final String INVALID_BODY = "Invalid request body";
+
+        private final int maxBodyBytes;
+        private final WorkOrderStore store;
+        private final IdempotencyCache idempotency; // null if disabled
+
+        RequestHandler(ServerConfig config, WorkOrderStore store) {
+            this.maxBodyBytes = config.maxBodyBytes;
+            this.store = store;
+            this.idempotency = config.idempotencyMaxEntries > 0
+                ? new IdempotencyCache(config.idempotencyMaxEntries, Duration.ofSeconds(config.idempotencyTtlSeconds))
+                : null;
+        }
 
+        // Logging, rate and concurrency limits and the Content-Type check run
+        // before this in the FilterPipeline
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             String method = exchange.getRequestMethod();
             String path = exchange.getRequestURI().getPath();
             String query = exchange.getRequestURI().getQuery();
 
-            System.out.println(MessageFormat.format("[{0}] {1} {2}",
-                java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss")),
-                method,
-                path + (query != null ? "?" + query : "")));
-
-            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            WerkstattEvents.Request event = WerkstattEvents.Request.start(exchange);
+            long requestBytes = -1;
+            try (BufferPool.Lease body = readBody(exchange, maxBodyBytes)) {
+                if (body == null) {
+                    exchange.getResponseHeaders().add("Connection", "close");
+                    sendError(exchange, PAYLOAD_TOO_LARGE, "Payload too large",
+                        "Request body must not exceed " + maxBodyBytes + " bytes", path);
+                    return;
+                }
+                requestBytes = body.length;
+                route(exchange, method, path, query, body);
+            } finally {
+                event.finish(exchange, requestBytes);
+            }
+        }
 
+        private void route(HttpExchange exchange, String method, String path, String query,
+                           BufferPool.Lease body) throws IOException {
             // --- ROUTING ---
 
             if (path.equals("/workorders")) {
@@ -151,13 +300,13 @@ public class WerkstattRESTServer {
                 long id = extractIdFromPath(path);
 
                 if (id == -1) {
-                    sendError(exchange, BAD_REQUEST, "Invalid ID format", "ID must be a positive integer", path);
+                    sendValidationError(exchange, "Invalid ID format", "ID must be a positive integer", path);
                     return;
                 }
 
                 switch (method) {
                     case "GET":
-                        handleGetItem(exchange, id);
+                        handleGetItem(exchange, id, query);
                         break;
                     case "PUT":
                         handlePut(exchange, id, body);
@@ -178,141 +327,266 @@ public class WerkstattRESTServer {
         // --- COLLECTION WITH FILTERS ---
         private void handleGetCollection(HttpExchange exchange, String queryString) throws IOException {
             Map<String, String> params = parseQueryParams(queryString);
+            WorkOrderProjection projection = parseFields(params);
+            if (projection == null) {
+                sendInvalidFields(exchange, "/workorders");
+                return;
+            }
+            int limit = Integer.MAX_VALUE;
+            if (params.containsKey("limit")) {
+                limit = parseLimit(params.get("limit"));
+                if (limit < 1) {
+                    sendValidationError(exchange, "Invalid limit",
+                        "limit must be a positive integer", "/workorders");
+                    return;
+                }
+            }
 
-            // Data filtering
-            List<WorkOrder> filtered = DATABASE.values().stream()
-                .filter(wo -> {
-                    // Filtre par status
-                    if (params.containsKey("status")) {
-                        if (!wo.status.equalsIgnoreCase(params.get("status"))) {
-                            return false;
-                        }
-                    }
-                    // Filtre par licensePlate
-                    if (params.containsKey("licensePlate")) {
-                        if (!wo.licensePlate.equalsIgnoreCase(params.get("licensePlate"))) {
-                            return false;
-                        }
-                    }
-                    // Filtre par dueDate
-                    if (params.containsKey("dueDate")) {
-                        if (!wo.dueDate.equals(params.get("dueDate"))) {
-                            return false;
-                        }
-                    }
-                    return true;
-                })
-                .collect(Collectors.toList());
+            WorkOrderQuery workOrderQuery = WorkOrderQuery.parse(params);
+            WorkOrderQuery.Result result;
+            try (WorkOrderStore.ReadView view = openView(exchange, params, "/workorders")) {
+                if (view == null) {
+                    return;
+                }
+                WerkstattEvents.StoreRead read = WerkstattEvents.StoreRead.start("query");
+                result = workOrderQuery.execute(view);
+                read.finish(result.strategy, result.examined, result.orders.size());
+                exchange.getResponseHeaders().add("X-Sequence", Long.toString(view.sequence));
+            }
+            List<WorkOrder> filtered = result.orders;
+
+            // with a limit the lowest ids win, so a router can merge limited shard results
+            if (limit < filtered.size()) {
+                filtered = filtered.stream()
+                    .sorted(Comparator.comparingLong(wo -> wo.id))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+            }
 
-            String jsonResponse = filtered.stream()
-                .map(WorkOrder::toJson)
-                .collect(Collectors.joining(",", "[", "]"));
+            if ("true".equals(params.get("explain"))) {
+                sendJson(exchange, OK, workOrderQuery.explainJson(result, filtered.size()));
+                return;
+            }
+            sendOrders(exchange, filtered, projection);
+        }
 
-            sendJson(exchange, OK, jsonResponse);
+        /**
+         * A view of the store for a read: as of the asOf parameter if given,
+         * else the latest. Null after sending the error for an invalid or no
+         * longer available asOf.
+         */
+        private WorkOrderStore.ReadView openView(HttpExchange exchange, Map<String, String> params,
+                                                 String path) throws IOException {
+            String asOf = params.get("asOf");
+            if (asOf == null) {
+                return store.openView();
+            }
+            long sequence = parseSequence(asOf);
+            if (sequence < 0) {
+                sendValidationError(exchange, "Invalid asOf", "asOf must be a sequence number", path);
+                return null;
+            }
+            long latest = store.sequence();
+            if (sequence > latest) {
+                sendValidationError(exchange, "Invalid asOf",
+                    "asOf must not be ahead of the latest sequence " + latest, path);
+                return null;
+            }
+            WorkOrderStore.ReadView view = store.openView(sequence);
+            if (view == null) {
+                sendError(exchange, GONE, "Snapshot no longer available",
+                    "Oldest available sequence is " + store.oldestSequence(), path);
+            }
+            return view;
         }
 
         // --- POST avec validation ---
-        private void handlePost(HttpExchange exchange, String body) throws IOException {
-            // Vérification Content-Type
-            List<String> contentTypes = exchange.getRequestHeaders().get("Content-Type");
-            if (contentTypes == null || !contentTypes.get(0).contains("application/json")) {
-                sendError(exchange, BAD_REQUEST, "Invalid Content-Type",
-                    "Expected: application/json", "/workorders");
+        private void handlePost(HttpExchange exchange, BufferPool.Lease body) throws IOException {
+            String key = exchange.getRequestHeaders().getFirst(IdempotencyCache.HEADER);
+            if (key != null && idempotency != null) {
+                handleIdempotentPost(exchange, key, body);
+                return;
+            }
+
+            CreateResult result = create(exchange, body);
+            if (result.order == null) {
+                sendValidationError(exchange, result.errorMessage, result.errorDetail, "/workorders");
                 return;
             }
+            exchange.getResponseHeaders().add("Location", "/workorders/" + result.order.id);
+            sendOrder(exchange, CREATED, result.order, WorkOrderProjection.ALL);
+        }
 
-            String licensePlate = extractJsonValue(body, "licensePlate");
-            String description = extractJsonValue(body, "description");
-            String status = extractJsonValue(body, "status");
-            String dueDate = extractJsonValue(body, "dueDate");
+        /**
+         * A POST that may be a retry: the response is encoded before it is
+         * sent and cached under the key, so a retry after a lost response
+         * replays it instead of creating the order again.
+         */
+        private void handleIdempotentPost(HttpExchange exchange, String key,
+                                          BufferPool.Lease body) throws IOException {
+            if (!IdempotencyCache.isValidKey(key)) {
+                sendValidationError(exchange, "Invalid " + IdempotencyCache.HEADER,
+                    IdempotencyCache.HEADER + " must be 1-" + IdempotencyCache.MAX_KEY_LENGTH
+                        + " visible ASCII characters", "/workorders");
+                return;
+            }
+            IdempotencyCache.Response response = idempotency.execute(key,
+                IdempotencyCache.fingerprint(body.array, body.length), () -> encode(exchange, create(exchange, body)));
+            if (response == null) {
+                sendError(exchange, UNPROCESSABLE_ENTITY, IdempotencyCache.HEADER + " reused",
+                    "The key was already used for a different request body", "/workorders");
+                return;
+            }
+            if (response.location != null) {
+                exchange.getResponseHeaders().add("Location", response.location);
+            }
+            if (response.replayed) {
+                exchange.getResponseHeaders().add("Idempotent-Replayed", "true");
+            }
+            exchange.getResponseHeaders().add("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response.body);
+            }
+        }
+
+        /** The order created from a POST body, or why the body was rejected. */
+        private static final class CreateResult {
+            final WorkOrder order;
+            final String errorMessage;
+            final String errorDetail;
+
+            CreateResult(WorkOrder order, String errorMessage, String errorDetail) {
+                this.order = order;
+                this.errorMessage = errorMessage;
+                this.errorDetail = errorDetail;
+            }
+        }
+
+        private CreateResult create(HttpExchange exchange, BufferPool.Lease body) {
+            OrderInput input = readInput(exchange, body);
+            if (input == null) {
+                return new CreateResult(null, INVALID_BODY, invalidBinaryDetail());
+            }
 
             // Validation
-            ValidationResult validation = validateWorkOrder(licensePlate, description, status, dueDate);
+            ValidationResult validation = validateWorkOrder(input);
             if (!validation.isValid) {
-                sendError(exchange, BAD_REQUEST, validation.errorMessage,
-                    validation.errorDetail, "/workorders");
-                return;
+                return new CreateResult(null, validation.errorMessage, validation.errorDetail);
             }
 
             // Création
-            WorkOrder newOrder = createOrder(
-                licensePlate,
-                description,
-                status != null ? status : "PENDING",
-                dueDate
+            WorkOrder newOrder = store.create(
+                input.licensePlate,
+                input.description,
+                input.status != null ? input.status : WorkOrder.Status.PENDING,
+                input.dueDate
             );
+            return new CreateResult(newOrder, null, null);
+        }
 
-            exchange.getResponseHeaders().add("Location", "/workorders/" + newOrder.id);
-            sendJson(exchange, CREATED, newOrder.toJson());
+        // the response sendOrder or sendValidationError would send, as bytes to keep
+        private IdempotencyCache.Response encode(HttpExchange exchange, CreateResult result) throws IOException {
+            if (result.order == null) {
+                WerkstattEvents.ValidationFailure.emit("/workorders", result.errorMessage, result.errorDetail);
+                return new IdempotencyCache.Response(BAD_REQUEST, null, JSON_CONTENT_TYPE,
+                    errorJson(result.errorMessage, result.errorDetail, "/workorders").getBytes(StandardCharsets.UTF_8));
+            }
+            String location = "/workorders/" + result.order.id;
+            if (!WorkOrderCodec.accepts(exchange.getRequestHeaders().getFirst("Accept"))) {
+                WerkstattEvents.Serialization event = WerkstattEvents.Serialization.start("json", 1);
+                byte[] json = WorkOrderProjection.ALL.toJson(result.order).getBytes(StandardCharsets.UTF_8);
+                event.finish(json.length);
+                return new IdempotencyCache.Response(CREATED, location, JSON_CONTENT_TYPE, json);
+            }
+            WerkstattEvents.Serialization event = WerkstattEvents.Serialization.start("binary", 1);
+            byte[] binary = new WorkOrderCodec.Writer().order(result.order).toByteArray();
+            event.finish(binary.length);
+            return new IdempotencyCache.Response(CREATED, location, WorkOrderCodec.MEDIA_TYPE, binary);
         }
 
-        private void handleGetItem(HttpExchange exchange, long id) throws IOException {
-            WorkOrder order = DATABASE.get(id);
+        private void handleGetItem(HttpExchange exchange, long id, String queryString) throws IOException {
+            Map<String, String> params = parseQueryParams(queryString);
+            WorkOrderProjection projection = parseFields(params);
+            if (projection == null) {
+                sendInvalidFields(exchange, "/workorders/" + id);
+                return;
+            }
+            WorkOrder order;
+            try (WorkOrderStore.ReadView view = openView(exchange, params, "/workorders/" + id)) {
+                if (view == null) {
+                    return;
+                }
+                WerkstattEvents.StoreRead read = WerkstattEvents.StoreRead.start("get");
+                order = view.get(id);
+                read.finish(null, 1, order != null ? 1 : 0);
+                exchange.getResponseHeaders().add("X-Sequence", Long.toString(view.sequence));
+            }
             if (order != null) {
-                sendJson(exchange, OK, order.toJson());
+                sendOrder(exchange, OK, order, projection);
             } else {
                 sendError(exchange, NOT_FOUND, "WorkOrder not found",
                     "No work order exists with ID " + id, "/workorders/" + id);
             }
         }
 
-        private void handlePut(HttpExchange exchange, long id, String body) throws IOException {
-            WorkOrder order = DATABASE.get(id);
-            if (order == null) {
+        private void handlePut(HttpExchange exchange, long id, BufferPool.Lease body) throws IOException {
+            WerkstattEvents.StoreRead read = WerkstattEvents.StoreRead.start("get");
+            boolean exists = store.get(id) != null;
+            read.finish(null, 1, exists ? 1 : 0);
+            if (!exists) {
                 sendError(exchange, NOT_FOUND, "WorkOrder not found",
                     "No work order exists with ID " + id, "/workorders/" + id);
                 return;
             }
 
-            // Vérification Content-Type
-            List<String> contentTypes = exchange.getRequestHeaders().get("Content-Type");
-            if (contentTypes == null || !contentTypes.get(0).contains("application/json")) {
-                sendError(exchange, BAD_REQUEST, "Invalid Content-Type",
-                    "Expected: application/json", "/workorders/" + id);
+            OrderInput input = readInput(exchange, body);
+            if (input == null) {
+                sendInvalidBinary(exchange, "/workorders/" + id);
                 return;
             }
-
-            String licensePlate = extractJsonValue(body, "licensePlate");
-            String description = extractJsonValue(body, "description");
-            String status = extractJsonValue(body, "status");
-            String dueDate = extractJsonValue(body, "dueDate");
+            String licensePlate = input.licensePlate;
+            String description = input.description;
 
             // Validation des champs modifiés
-            if (status != null && !isValidStatus(status)) {
-                sendError(exchange, BAD_REQUEST, "Invalid status",
+            if (input.hasStatus && input.status == null) {
+                sendValidationError(exchange, "Invalid status",
                     "Status must be PENDING, IN_PROGRESS, or COMPLETED", "/workorders/" + id);
                 return;
             }
 
-            if (dueDate != null && !isValidDate(dueDate)) {
-                sendError(exchange, BAD_REQUEST, "Invalid date format",
+            if (input.hasDueDate && input.dueDate == null) {
+                sendValidationError(exchange, "Invalid date format",
                     "Date must be in YYYY-MM-DD format", "/workorders/" + id);
                 return;
             }
 
             if (licensePlate != null && !isValidLicensePlate(licensePlate)) {
-                sendError(exchange, BAD_REQUEST, "Invalid license plate",
+                sendValidationError(exchange, "Invalid license plate",
                     "License plate must be 1-20 characters", "/workorders/" + id);
                 return;
             }
 
             if (description != null && !isValidDescription(description)) {
-                sendError(exchange, BAD_REQUEST, "Invalid description",
+                sendValidationError(exchange, "Invalid description",
                     "Description must be 1-255 characters", "/workorders/" + id);
                 return;
             }
 
             // Mise à jour
-            if (licensePlate != null) order.licensePlate = licensePlate;
-            if (description != null) order.description = description;
-            if (status != null) order.status = status;
-            if (dueDate != null) order.dueDate = dueDate;
+            WorkOrder order = store.update(id, licensePlate, description, input.status, input.dueDate);
+            if (order == null) {
+                // deleted concurrently
+                sendError(exchange, NOT_FOUND, "WorkOrder not found",
+                    "No work order exists with ID " + id, "/workorders/" + id);
+                return;
+            }
 
-            sendJson(exchange, OK, order.toJson());
+            sendOrder(exchange, OK, order, WorkOrderProjection.ALL);
         }
 
         private void handleDelete(HttpExchange exchange, long id) throws IOException {
-            if (DATABASE.remove(id) != null) {
+            if (store.delete(id)) {
                 exchange.sendResponseHeaders(NO_CONTENT, -1);
                 System.out.println("  → WorkOrder " + id + " deleted");
             } else {
@@ -321,6 +595,64 @@ public class WerkstattRESTServer {
             }
         }
 
+        // --- REQUEST BODY ---
+
+        /** The fields of a POST or PUT body, decoded from JSON or the binary encoding. */
+        private static final class OrderInput {
+            String licensePlate;
+            String description;
+            boolean hasStatus;
+            WorkOrder.Status status;   // null if absent or not a valid status
+            boolean hasDueDate;
+            Integer dueDate;           // null if absent or not a valid date
+        }
+
+        // null if a binary body cannot be decoded
+        private OrderInput readInput(HttpExchange exchange, BufferPool.Lease body) {
+            OrderInput input = new OrderInput();
+            if (WorkOrderCodec.isBinary(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                WorkOrderCodec.Fields fields;
+                try {
+                    fields = new WorkOrderCodec.Reader(body.array, body.length).fields();
+                } catch (IOException e) {
+                    return null;
+                }
+                input.licensePlate = fields.licensePlate;
+                input.description = fields.description;
+                input.hasStatus = fields.status != null || fields.invalidStatus;
+                input.status = fields.status;
+                input.hasDueDate = fields.dueDate != null || fields.invalidDueDate;
+                input.dueDate = fields.dueDate;
+                return input;
+            }
+
+            String json = new String(body.array, 0, body.length, StandardCharsets.UTF_8);
+            input.licensePlate = extractJsonValue(json, "licensePlate");
+            input.description = extractJsonValue(json, "description");
+            String status = extractJsonValue(json, "status");
+            input.hasStatus = status != null;
+            input.status = WorkOrder.Status.parse(status);
+            String dueDate = extractJsonValue(json, "dueDate");
+            input.hasDueDate = dueDate != null;
+            input.dueDate = dueDate != null ? parseDueDate(dueDate) : null;
+            return input;
+        }
+
+        private void sendInvalidBinary(HttpExchange exchange, String path) throws IOException {
+            sendValidationError(exchange, INVALID_BODY, invalidBinaryDetail(), path);
+        }
+
+        private static String invalidBinaryDetail() {
+            return "Body is not a valid " + WorkOrderCodec.MEDIA_TYPE + " work order";
+        }
+
+        // a 400 for the request's body or parameters, recorded as a ValidationFailure event
+        private void sendValidationError(HttpExchange exchange, String message, String detail,
+                                         String path) throws IOException {
+            WerkstattEvents.ValidationFailure.emit(path, message, detail);
+            sendError(exchange, BAD_REQUEST, message, detail, path);
+        }
+
         // --- VALIDATION ---
 
         static class ValidationResult {
@@ -335,7 +667,9 @@ public class WerkstattRESTServer {
             }
         }
 
-        private ValidationResult validateWorkOrder(String lp, String desc, String status, String dueDate) {
+        private ValidationResult validateWorkOrder(OrderInput input) {
+            String lp = input.licensePlate;
+            String desc = input.description;
             if (lp == null || lp.trim().isEmpty()) {
                 return new ValidationResult(false, "Missing required field",
                     "licensePlate is required");
@@ -354,16 +688,16 @@ public class WerkstattRESTServer {
                     "Description must be 1-255 characters");
             }
 
-            if (status != null && !isValidStatus(status)) {
+            if (input.hasStatus && input.status == null) {
                 return new ValidationResult(false, "Invalid status",
                     "Status must be PENDING, IN_PROGRESS, or COMPLETED");
             }
 
-            if (dueDate == null || dueDate.trim().isEmpty()) {
+            if (!input.hasDueDate) {
                 return new ValidationResult(false, "Missing required field",
                     "dueDate is required");
             }
-            if (!isValidDate(dueDate)) {
+            if (input.dueDate == null) {
                 return new ValidationResult(false, "Invalid date format",
                     "Date must be in YYYY-MM-DD format");
             }
@@ -371,19 +705,6 @@ public class WerkstattRESTServer {
             return new ValidationResult(true, null, null);
         }
 
-        private boolean isValidStatus(String status) {
-            return status.equals("PENDING") || status.equals("IN_PROGRESS") || status.equals("COMPLETED");
-        }
-
-        private boolean isValidDate(String date) {
-            try {
-                LocalDate.parse(date);
-                return true;
-            } catch (DateTimeParseException e) {
-                return false;
-            }
-        }
-
         private boolean isValidLicensePlate(String lp) {
             return lp != null && lp.length() >= 1 && lp.length() <= 20;
         }
@@ -415,6 +736,74 @@ public class WerkstattRESTServer {
             return params;
         }
 
+        // all fields without the parameter, null if it names an unknown field
+        private WorkOrderProjection parseFields(Map<String, String> params) {
+            String fields = params.get("fields");
+            return fields == null ? WorkOrderProjection.ALL : WorkOrderProjection.parse(fields);
+        }
+
+        private void sendInvalidFields(HttpExchange exchange, String path) throws IOException {
+            sendValidationError(exchange, "Invalid fields",
+                "fields must be a comma-separated list of: " + WorkOrderProjection.names(), path);
+        }
+
+        // -1 for anything but a non-negative integer
+        private long parseSequence(String sequence) {
+            try {
+                return Math.max(-1, Long.parseLong(sequence));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        // -1 for anything but a positive integer
+        private int parseLimit(String limit) {
+            try {
+                return Integer.parseInt(limit);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        // null if unparsable; as a filter that matches no order, same as comparing against the raw text did
+        private Integer parseDueDate(String date) {
+            try {
+                return WorkOrder.parseDueDate(date);
+            } catch (DateTimeParseException | ArithmeticException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Reads the request body, or returns null if it is larger than maxBodyBytes.
+         * A declared Content-Length is checked before anything is buffered; chunked
+         * bodies are read only up to the limit. The body comes in a pooled buffer
+         * the caller must close.
+         */
+        static BufferPool.Lease readBody(HttpExchange exchange, int maxBodyBytes) throws IOException {
+            int expectedLength = 0;
+            String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null) {
+                try {
+                    long length = Long.parseLong(contentLength.trim());
+                    if (length > maxBodyBytes) {
+                        return null;
+                    }
+                    expectedLength = (int) Math.max(0, length);
+                } catch (NumberFormatException e) {
+                    // the JDK server already rejects malformed lengths, read with the limit below
+                }
+            }
+            try (InputStream in = exchange.getRequestBody()) {
+                BufferPool.Lease body = BufferPool.shared().read(in, expectedLength, maxBodyBytes);
+                if (body.length > maxBodyBytes) {
+                    body.close();
+                    return null;
+                }
+                return body;
+            }
+        }
+
         private long extractIdFromPath(String path) {
             try {
                 return Long.parseLong(path.substring(path.lastIndexOf('/') + 1));
@@ -423,22 +812,82 @@ public class WerkstattRESTServer {
             }
         }
 
-        private void sendJson(HttpExchange exchange, int statusCode, String jsonResponse) throws IOException {
-            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
-            byte[] responseBytes = jsonResponse.getBytes(StandardCharsets.UTF_8);
+        static void sendJson(HttpExchange exchange, int statusCode, CharSequence jsonResponse) throws IOException {
+            try (BufferPool.Lease response = BufferPool.shared().encodeUtf8(jsonResponse)) {
+                sendJson(exchange, statusCode, response);
+            }
+        }
+
+        private static void sendJson(HttpExchange exchange, int statusCode,
+                                     BufferPool.Lease response) throws IOException {
+            exchange.getResponseHeaders().add("Content-Type", JSON_CONTENT_TYPE);
+            exchange.sendResponseHeaders(statusCode, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                response.writeTo(os);
+            }
+        }
+
+        /**
+         * Sends one order as JSON with the projected fields, or binary if the
+         * client's Accept header asks for it; binary records always hold all fields.
+         */
+        static void sendOrder(HttpExchange exchange, int statusCode, WorkOrder order,
+                              WorkOrderProjection projection) throws IOException {
+            if (!WorkOrderCodec.accepts(exchange.getRequestHeaders().getFirst("Accept"))) {
+                WerkstattEvents.Serialization event = WerkstattEvents.Serialization.start("json", 1);
+                try (BufferPool.Lease response = BufferPool.shared().encodeUtf8(projection.toJson(order))) {
+                    event.finish(response.length);
+                    sendJson(exchange, statusCode, response);
+                }
+                return;
+            }
+            WerkstattEvents.Serialization event = WerkstattEvents.Serialization.start("binary", 1);
+            byte[] responseBytes = new WorkOrderCodec.Writer().order(order).toByteArray();
+            event.finish(responseBytes.length);
+            exchange.getResponseHeaders().add("Content-Type", WorkOrderCodec.MEDIA_TYPE);
             exchange.sendResponseHeaders(statusCode, responseBytes.length);
             try (OutputStream os = exchange.getResponseBody()) {
                 os.write(responseBytes);
             }
         }
 
-        private void sendError(HttpExchange exchange, int statusCode, String message,
-                               String detail, String path) throws IOException {
-            String jsonError = String.format(
+        /** Sends a list of orders; the binary form is streamed order by order. */
+        static void sendOrders(HttpExchange exchange, List<WorkOrder> orders,
+                               WorkOrderProjection projection) throws IOException {
+            if (!WorkOrderCodec.accepts(exchange.getRequestHeaders().getFirst("Accept"))) {
+                WerkstattEvents.Serialization event = WerkstattEvents.Serialization.start("json", orders.size());
+                try (BufferPool.Lease response = BufferPool.shared().encodeUtf8(projection.toJsonBuilder(orders))) {
+                    event.finish(response.length);
+                    sendJson(exchange, OK, response);
+                }
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", WorkOrderCodec.MEDIA_TYPE);
+            exchange.sendResponseHeaders(OK, 0); // chunked
+            WerkstattEvents.Serialization event = WerkstattEvents.Serialization.start("binary", orders.size());
+            byte[] buffer = BufferPool.shared().acquire(BufferPool.MAX_CLASS_SIZE / 8);
+            try (OutputStream os = event.count(exchange.getResponseBody())) {
+                WorkOrderCodec.Writer writer = new WorkOrderCodec.Writer(os, buffer);
+                for (WorkOrder order : orders) {
+                    writer.listItem(order);
+                }
+                writer.listEnd().flush();
+                event.finish();
+            } finally {
+                BufferPool.shared().release(buffer);
+            }
+        }
+
+        static void sendError(HttpExchange exchange, int statusCode, String message,
+                              String detail, String path) throws IOException {
+            sendJson(exchange, statusCode, errorJson(message, detail, path));
+        }
+
+        private static String errorJson(String message, String detail, String path) {
+            return String.format(
                 "{\"message\":\"%s\",\"detail\":\"%s\",\"path\":\"%s\"}",
                 message, detail, path
             );
-            sendJson(exchange, statusCode, jsonError);
         }
 
         private void sendMethodNotAllowed(HttpExchange exchange, String allowedMethods) throws IOException {
@@ -448,7 +897,7 @@ public class WerkstattRESTServer {
         }
 
         // Parse simple JSON
-        private String extractJsonValue(String json, String key) {
+        static String extractJsonValue(String json, String key) {
             try {
                 String searchKey = "\"" + key + "\"";
                 int start = json.indexOf(searchKey);
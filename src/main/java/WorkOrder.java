@@ -0,0 +1,68 @@
+import java.time.LocalDate;
+
+// --- MODEL CLASS (POJO) ---
+class WorkOrder {
+
+    /**
+     * The three states a work order can be in. Orders reference the shared enum
+     * constants instead of holding their own copy of the status text, and
+     * {@link #code} gives a one-byte form for compact encodings.
+     */
+    enum Status {
+        PENDING, IN_PROGRESS, COMPLETED;
+
+        private static final Status[] BY_CODE = values();
+
+        final byte code = (byte) ordinal();
+
+        static Status fromCode(byte code) {
+            return BY_CODE[code];
+        }
+
+        /** Exact, case-sensitive lookup as required by the API; null if unknown. */
+        static Status parse(String value) {
+            for (Status status : BY_CODE) {
+                if (status.name().equals(value)) {
+                    return status;
+                }
+            }
+            return null;
+        }
+    }
+
+    final long id;
+    final String licensePlate;
+    final String description;
+    final Status status;
+    final int dueDate; // days since 1970-01-01, see LocalDate.toEpochDay()
+
+    public WorkOrder(long id, String licensePlate, String description, Status status, int dueDate) {
+        this.id = id;
+        this.licensePlate = PlateDictionary.canonical(licensePlate);
+        this.description = description;
+        this.status = status;
+        this.dueDate = dueDate;
+    }
+
+    /** A copy with the non-null arguments replacing the current values. */
+    WorkOrder withChanges(String licensePlate, String description, Status status, Integer dueDate) {
+        return new WorkOrder(id,
+            licensePlate != null ? licensePlate : this.licensePlate,
+            description != null ? description : this.description,
+            status != null ? status : this.status,
+            dueDate != null ? dueDate : this.dueDate);
+    }
+
+    public String toJson() {
+        return WorkOrderProjection.ALL.toJson(this);
+    }
+
+    /** Parses a YYYY-MM-DD date into its epoch-day form; throws DateTimeParseException. */
+    static int parseDueDate(String date) {
+        return Math.toIntExact(LocalDate.parse(date).toEpochDay());
+    }
+
+    static String formatDueDate(int epochDay) {
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+}
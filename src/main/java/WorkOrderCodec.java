@@ -0,0 +1,321 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of work orders, an alternative to JSON for machine
+ * clients that send {@code Accept} / {@code Content-Type: application/vnd.werkstatt+binary}.
+ *
+ *   order   id (varint), licensePlate (string), description (string),
+ *           status (byte, WorkOrder.Status.code), dueDate (zigzag varint, epoch day)
+ *   list    one 0x01 marker before each order, 0x00 after the last
+ *   fields  presence mask (byte: 1 licensePlate, 2 description, 4 status, 8 dueDate),
+ *           then the present fields in that order; the body of POST and PUT
+ *   string  UTF-8 byte length (varint), bytes
+ *
+ * Varints are unsigned LEB128. Lists are written and read one order at a time,
+ * so neither side holds the encoded collection in memory. Error responses
+ * stay JSON.
+ */
+final class WorkOrderCodec {
+
+    static final String MEDIA_TYPE = "application/vnd.werkstatt+binary";
+
+    static final int LICENSE_PLATE = 1;
+    static final int DESCRIPTION = 2;
+    static final int STATUS = 4;
+    static final int DUE_DATE = 8;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    private WorkOrderCodec() {
+    }
+
+    /** True if an Accept header asks for the binary encoding; JSON is the default. */
+    static boolean accepts(String accept) {
+        return accept != null && accept.contains(MEDIA_TYPE);
+    }
+
+    static boolean isBinary(String contentType) {
+        return contentType != null && contentType.contains(MEDIA_TYPE);
+    }
+
+    /** Decoded POST/PUT body; a field is null when it is absent. */
+    static final class Fields {
+        String licensePlate;
+        String description;
+        WorkOrder.Status status;
+        Integer dueDate;
+        boolean invalidStatus; // present but not a known status code
+        boolean invalidDueDate; // present but beyond the epoch days of WorkOrder.parseDueDate
+    }
+
+    /** Encodes into a growing array, or in BUFFER_SIZE pieces to a stream. */
+    static final class Writer {
+        private final OutputStream out;
+        private byte[] buf;
+        private int pos;
+
+        /** Buffers everything, see {@link #toByteArray()}. */
+        Writer() {
+            this(null);
+        }
+
+        /** Streams to out, which must be flushed with {@link #flush()} at the end. */
+        Writer(OutputStream out) {
+            this(out, new byte[out == null ? 256 : BUFFER_SIZE]);
+        }
+
+        /** Streams to out through the given buffer, e.g. one from the {@link BufferPool}. */
+        Writer(OutputStream out, byte[] buffer) {
+            this.out = out;
+            this.buf = buffer;
+        }
+
+        Writer order(WorkOrder order) throws IOException {
+            varint(order.id);
+            string(order.licensePlate);
+            string(order.description);
+            ensure(1);
+            buf[pos++] = order.status.code;
+            varint(zigzag(order.dueDate));
+            return this;
+        }
+
+        Writer listItem(WorkOrder order) throws IOException {
+            ensure(1);
+            buf[pos++] = 1;
+            return order(order);
+        }
+
+        Writer listEnd() throws IOException {
+            ensure(1);
+            buf[pos++] = 0;
+            return this;
+        }
+
+        Writer fields(String licensePlate, String description, WorkOrder.Status status, Integer dueDate)
+                throws IOException {
+            int mask = (licensePlate != null ? LICENSE_PLATE : 0) | (description != null ? DESCRIPTION : 0)
+                | (status != null ? STATUS : 0) | (dueDate != null ? DUE_DATE : 0);
+            ensure(1);
+            buf[pos++] = (byte) mask;
+            if (licensePlate != null) {
+                string(licensePlate);
+            }
+            if (description != null) {
+                string(description);
+            }
+            if (status != null) {
+                ensure(1);
+                buf[pos++] = status.code;
+            }
+            if (dueDate != null) {
+                varint(zigzag(dueDate));
+            }
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        void flush() throws IOException {
+            if (pos > 0) {
+                out.write(buf, 0, pos);
+                pos = 0;
+            }
+            out.flush();
+        }
+
+        private void varint(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        private void string(String value) throws IOException {
+            int length = value.length();
+            // plates and most descriptions are ASCII: copy the chars without an intermediate array
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                varint(length);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buf[pos++] = (byte) value.charAt(i);
+                }
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                varint(bytes.length);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buf, pos, bytes.length);
+                pos += bytes.length;
+            }
+        }
+
+        private void ensure(int n) throws IOException {
+            if (pos + n <= buf.length) {
+                return;
+            }
+            if (out != null) {
+                out.write(buf, 0, pos);
+                pos = 0;
+            }
+            if (n > buf.length - pos) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        private static long zigzag(int value) {
+            return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+        }
+    }
+
+    /** Decodes from an array or, reading ahead in BUFFER_SIZE pieces, from a stream. */
+    static final class Reader {
+        private final InputStream in;
+        private byte[] buf;
+        private int pos;
+        private int limit;
+
+        Reader(byte[] bytes) {
+            this(bytes, bytes.length);
+        }
+
+        /** Reads the first length bytes of the array, e.g. a pooled request body. */
+        Reader(byte[] bytes, int length) {
+            this.in = null;
+            this.buf = bytes;
+            this.limit = length;
+        }
+
+        Reader(InputStream in) {
+            this.in = in;
+            this.buf = new byte[BUFFER_SIZE];
+        }
+
+        WorkOrder order() throws IOException {
+            long id = varint();
+            String licensePlate = string();
+            String description = string();
+            WorkOrder.Status status = status(readByte());
+            int dueDate = unzigzag(varint());
+            return new WorkOrder(id, licensePlate, description, status, dueDate);
+        }
+
+        /** Reads the next order of a list, or returns null at its end. */
+        WorkOrder nextListItem() throws IOException {
+            byte marker = readByte();
+            if (marker == 0) {
+                return null;
+            }
+            if (marker != 1) {
+                throw new IOException("Malformed work order list (marker " + marker + ")");
+            }
+            return order();
+        }
+
+        Fields fields() throws IOException {
+            int mask = readByte();
+            if ((mask & ~(LICENSE_PLATE | DESCRIPTION | STATUS | DUE_DATE)) != 0) {
+                throw new IOException("Unknown fields in mask " + mask);
+            }
+            Fields fields = new Fields();
+            if ((mask & LICENSE_PLATE) != 0) {
+                fields.licensePlate = string();
+            }
+            if ((mask & DESCRIPTION) != 0) {
+                fields.description = string();
+            }
+            if ((mask & STATUS) != 0) {
+                byte code = readByte();
+                fields.invalidStatus = code < 0 || code >= WorkOrder.Status.values().length;
+                fields.status = fields.invalidStatus ? null : WorkOrder.Status.fromCode(code);
+            }
+            if ((mask & DUE_DATE) != 0) {
+                long encoded = varint();
+                // zigzag keeps every int within 32 bits; more would be truncated to some other day
+                fields.invalidDueDate = (encoded & ~0xFFFFFFFFL) != 0;
+                fields.dueDate = fields.invalidDueDate ? null : unzigzag(encoded);
+            }
+            return fields;
+        }
+
+        private WorkOrder.Status status(byte code) throws IOException {
+            if (code < 0 || code >= WorkOrder.Status.values().length) {
+                throw new IOException("Unknown status code " + code);
+            }
+            return WorkOrder.Status.fromCode(code);
+        }
+
+        // at most 10 bytes, the last of which may only carry bit 63
+        private long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                if (shift == 63 && (b & 0x7E) != 0) {
+                    throw new IOException("Varint overflows 64 bits");
+                }
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private String string() throws IOException {
+            long length = varint();
+            if (length < 0 || length > MAX_STRING_BYTES) {
+                throw new IOException("String of " + length + " bytes is too long");
+            }
+            int n = (int) length;
+            require(n);
+            String value = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return value;
+        }
+
+        private byte readByte() throws IOException {
+            require(1);
+            return buf[pos++];
+        }
+
+        // makes n bytes available at buf[pos], reading more from the stream if needed
+        private void require(int n) throws IOException {
+            if (limit - pos >= n) {
+                return;
+            }
+            if (in == null) {
+                throw new EOFException("Truncated binary work order data");
+            }
+            if (n > buf.length) {
+                buf = Arrays.copyOf(buf, n);
+            }
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+            while (limit < n) {
+                int read = in.read(buf, limit, buf.length - limit);
+                if (read < 0) {
+                    throw new EOFException("Truncated binary work order data");
+                }
+                limit += read;
+            }
+        }
+
+        private static int unzigzag(long value) {
+            return (int) (value >>> 1) ^ -(int) (value & 1);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON serializer for a subset of the work order fields, as selected with
+ * {@code ?fields=id,licensePlate,status}.
+ *
+ * There are only 31 possible projections, so all of them are compiled when
+ * the class loads: each one holds its field writers and the literal text
+ * before every value ({"id": / ,"status":" ...). Serializing an order is then
+ * a run of appends, with no format string and no full JSON to trim.
+ * {@link #ALL} is the projection behind {@link WorkOrder#toJson()}.
+ */
+final class WorkOrderProjection {
+
+    enum Field {
+        ID("id", false) {
+            @Override
+            void appendValue(StringBuilder sb, WorkOrder order) {
+                sb.append(order.id);
+            }
+        },
+        LICENSE_PLATE("licensePlate", true) {
+            @Override
+            void appendValue(StringBuilder sb, WorkOrder order) {
+                appendEscaped(sb, order.licensePlate);
+            }
+        },
+        DESCRIPTION("description", true) {
+            @Override
+            void appendValue(StringBuilder sb, WorkOrder order) {
+                appendEscaped(sb, order.description);
+            }
+        },
+        STATUS("status", true) {
+            @Override
+            void appendValue(StringBuilder sb, WorkOrder order) {
+                sb.append(order.status.name());
+            }
+        },
+        DUE_DATE("dueDate", true) {
+            @Override
+            void appendValue(StringBuilder sb, WorkOrder order) {
+                sb.append(WorkOrder.formatDueDate(order.dueDate));
+            }
+        };
+
+        final String jsonName;
+        final boolean quoted;
+
+        Field(String jsonName, boolean quoted) {
+            this.jsonName = jsonName;
+            this.quoted = quoted;
+        }
+
+        abstract void appendValue(StringBuilder sb, WorkOrder order);
+    }
+
+    private static final Field[] FIELDS = Field.values();
+    private static final WorkOrderProjection[] BY_MASK = new WorkOrderProjection[1 << FIELDS.length];
+
+    static {
+        for (int mask = 1; mask < BY_MASK.length; mask++) {
+            BY_MASK[mask] = new WorkOrderProjection(mask);
+        }
+    }
+
+    static final WorkOrderProjection ALL = BY_MASK[BY_MASK.length - 1];
+
+    private final Field[] fields;
+    private final String[] prefixes;
+    private final int estimatedLength;
+
+    private WorkOrderProjection(int mask) {
+        List<Field> selected = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        int length = 2;
+        for (Field field : FIELDS) {
+            if ((mask & (1 << field.ordinal())) != 0) {
+                literals.add((selected.isEmpty() ? "{" : ",") + "\"" + field.jsonName + "\":" + (field.quoted ? "\"" : ""));
+                selected.add(field);
+                length += field == Field.DESCRIPTION ? 48 : 16;
+            }
+        }
+        this.fields = selected.toArray(new Field[0]);
+        this.prefixes = literals.toArray(new String[0]);
+        this.estimatedLength = length;
+    }
+
+    /**
+     * The projection for a comma-separated list of field names, in any order;
+     * the output always uses the order of {@link Field}. Returns null if a
+     * name is unknown or the list is empty.
+     */
+    static WorkOrderProjection parse(String fieldList) {
+        int mask = 0;
+        for (String name : fieldList.split(",")) {
+            Field field = byName(name.trim());
+            if (field == null) {
+                return null;
+            }
+            mask |= 1 << field.ordinal();
+        }
+        return BY_MASK[mask];
+    }
+
+    /** The field names accepted by {@link #parse}, for error messages. */
+    static String names() {
+        StringBuilder sb = new StringBuilder();
+        for (Field field : FIELDS) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(field.jsonName);
+        }
+        return sb.toString();
+    }
+
+    String toJson(WorkOrder order) {
+        StringBuilder sb = new StringBuilder(estimatedLength);
+        appendJson(sb, order);
+        return sb.toString();
+    }
+
+    String toJson(List<WorkOrder> orders) {
+        return toJsonBuilder(orders).toString();
+    }
+
+    /** The JSON array of the orders, left in the builder so it can be encoded without a String copy. */
+    StringBuilder toJsonBuilder(List<WorkOrder> orders) {
+        StringBuilder sb = new StringBuilder(2 + orders.size() * estimatedLength);
+        sb.append('[');
+        for (int i = 0; i < orders.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendJson(sb, orders.get(i));
+        }
+        return sb.append(']');
+    }
+
+    void appendJson(StringBuilder sb, WorkOrder order) {
+        for (int i = 0; i < fields.length; i++) {
+            sb.append(prefixes[i]);
+            fields[i].appendValue(sb, order);
+            if (fields[i].quoted) {
+                sb.append('"');
+            }
+        }
+        sb.append('}');
+    }
+
+    private static Field byName(String name) {
+        for (Field field : FIELDS) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    // only \ and " are escaped, as the API always did; clean strings are appended as they are
+    private static void appendEscaped(StringBuilder sb, String value) {
+        int i = 0;
+        while (i < value.length() && value.charAt(i) != '\\' && value.charAt(i) != '"') {
+            i++;
+        }
+        if (i == value.length()) {
+            sb.append(value);
+            return;
+        }
+        sb.append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Filters of GET /workorders, parsed into predicates and planned against the
+ * store's indexes.
+ *
+ * Every filter parameter takes a comma-separated IN list, and a leading '!'
+ * negates it: status=PENDING,IN_PROGRESS or status=!COMPLETED. Status and
+ * license plate match case-insensitively; unparsable dates match nothing.
+ *
+ * The planner estimates each positive predicate from its index, drives the
+ * lookup with the most selective one and intersects the ids with the other
+ * positive predicates' indexes before touching any order. Negated predicates
+ * cannot use an index and are checked on the orders. When no index narrows
+ * the result enough, it scans the store partitions instead, in parallel on
+ * the common fork-join pool once the store is large enough to pay for it.
+ * Orders found through an index are always rechecked against all predicates,
+ * since indexes are updated after the orders themselves and also hold the
+ * values of older versions that a view may still read.
+ *
+ * A query runs against a {@link WorkOrderStore.ReadView}, so its result is
+ * the store as of one sequence, even while writes go on.
+ */
+final class WorkOrderQuery {
+
+    /** An index is only used if it selects at most this share of the store. */
+    static final double MAX_INDEX_SELECTIVITY = 0.3;
+    /** Smaller stores are scanned on the calling thread. */
+    static final int PARALLEL_SCAN_THRESHOLD = 8192;
+
+    enum Field {
+        STATUS("status"), LICENSE_PLATE("licensePlate"), DUE_DATE("dueDate");
+
+        final String param;
+
+        Field(String param) {
+            this.param = param;
+        }
+    }
+
+    /** One filter parameter: the field's value is (not) one of values. */
+    static final class Predicate {
+        final Field field;
+        final boolean negated;
+        final Set<Object> values; // Status, upper-case plate or Integer epoch day
+
+        Predicate(Field field, boolean negated, Set<Object> values) {
+            this.field = field;
+            this.negated = negated;
+            this.values = values;
+        }
+
+        boolean matches(WorkOrder order) {
+            return values.contains(valueOf(order)) != negated;
+        }
+
+        private Object valueOf(WorkOrder order) {
+            switch (field) {
+                case STATUS:
+                    return order.status;
+                case LICENSE_PLATE:
+                    return WorkOrderStore.plateKey(order.licensePlate);
+                default:
+                    return order.dueDate;
+            }
+        }
+
+        /** Ids of the orders matching a positive predicate, one index set per value. */
+        List<Set<Long>> lookup(WorkOrderStore store) {
+            List<Set<Long>> sets = new ArrayList<>(values.size());
+            for (Object value : values) {
+                switch (field) {
+                    case STATUS:
+                        sets.add(store.idsWithStatus((WorkOrder.Status) value));
+                        break;
+                    case LICENSE_PLATE:
+                        sets.add(store.idsWithPlate((String) value));
+                        break;
+                    default:
+                        sets.add(store.idsDueOn((Integer) value));
+                }
+            }
+            return sets;
+        }
+
+        @Override
+        public String toString() {
+            return field.param + (negated ? " NOT IN " : " IN ") + values;
+        }
+    }
+
+    /** The orders found and how. */
+    static final class Result {
+        final List<WorkOrder> orders;
+        final String strategy;
+        final List<String> steps;
+        final long examined;
+        final long micros;
+
+        Result(List<WorkOrder> orders, String strategy, List<String> steps, long examined, long micros) {
+            this.orders = orders;
+            this.strategy = strategy;
+            this.steps = steps;
+            this.examined = examined;
+            this.micros = micros;
+        }
+    }
+
+    private final List<Predicate> predicates;
+
+    private WorkOrderQuery(List<Predicate> predicates) {
+        this.predicates = predicates;
+    }
+
+    /** The predicates of the filter parameters present; other parameters are ignored. */
+    static WorkOrderQuery parse(Map<String, String> params) {
+        List<Predicate> predicates = new ArrayList<>();
+        for (Field field : Field.values()) {
+            String param = params.get(field.param);
+            if (param == null) {
+                continue;
+            }
+            boolean negated = param.startsWith("!");
+            Set<Object> values = new LinkedHashSet<>();
+            for (String raw : (negated ? param.substring(1) : param).split(",")) {
+                Object value = parseValue(field, raw.trim());
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            predicates.add(new Predicate(field, negated, values));
+        }
+        return new WorkOrderQuery(predicates);
+    }
+
+    // null for values no order can have
+    private static Object parseValue(Field field, String raw) {
+        switch (field) {
+            case STATUS:
+                return WorkOrder.Status.parse(raw.toUpperCase(Locale.ROOT));
+            case LICENSE_PLATE:
+                return raw.isEmpty() ? null : WorkOrderStore.plateKey(raw);
+            default:
+                try {
+                    return WorkOrder.parseDueDate(raw);
+                } catch (DateTimeParseException | ArithmeticException e) {
+                    return null;
+                }
+        }
+    }
+
+    /** Runs against the latest state of the store. */
+    Result execute(WorkOrderStore store) {
+        try (WorkOrderStore.ReadView view = store.openView()) {
+            return execute(view);
+        }
+    }
+
+    Result execute(WorkOrderStore.ReadView view) {
+        long start = System.nanoTime();
+        List<String> steps = new ArrayList<>();
+        WorkOrderStore store = view.store();
+        int size = view.size();
+
+        // estimate every positive predicate from its index
+        Predicate driver = null;
+        long driverEstimate = Long.MAX_VALUE;
+        for (Predicate predicate : predicates) {
+            if (predicate.negated) {
+                steps.add("filter " + predicate + " (negation, no index)");
+                continue;
+            }
+            long estimate = 0;
+            for (Set<Long> ids : predicate.lookup(store)) {
+                estimate += ids.size();
+            }
+            steps.add("estimate " + predicate + ": " + estimate + " of " + size + " orders");
+            if (estimate < driverEstimate) {
+                driver = predicate;
+                driverEstimate = estimate;
+            }
+        }
+
+        Result result;
+        if (driver != null && driverEstimate <= size * MAX_INDEX_SELECTIVITY) {
+            result = indexLookup(view, driver, steps, start);
+        } else {
+            if (driver != null) {
+                steps.add("index on " + driver.field.param + " not selective enough ("
+                    + driverEstimate + " > " + (int) (MAX_INDEX_SELECTIVITY * 100) + "% of " + size + ")");
+            } else if (!predicates.isEmpty()) {
+                steps.add("no positive predicate, no index applies");
+            }
+            result = scan(view, size, steps, start);
+        }
+        return result;
+    }
+
+    private Result indexLookup(WorkOrderStore.ReadView view, Predicate driver, List<String> steps, long start) {
+        WorkOrderStore store = view.store();
+        steps.add("drive with index " + driver);
+        List<List<Set<Long>>> otherSets = new ArrayList<>();
+        for (Predicate predicate : predicates) {
+            if (predicate != driver && !predicate.negated) {
+                otherSets.add(predicate.lookup(store));
+                steps.add("intersect with index " + predicate);
+            }
+        }
+
+        List<WorkOrder> orders = new ArrayList<>();
+        long examined = 0;
+        List<Set<Long>> driverSets = driver.lookup(store);
+        // indexes keep an updated order under its old values too while versions are retained,
+        // so the sets of an IN list can share ids
+        Set<Long> seen = driverSets.size() > 1 ? new HashSet<>() : null;
+        for (Set<Long> ids : driverSets) {
+            for (Long id : ids) {
+                if (!inAll(id, otherSets) || seen != null && !seen.add(id)) {
+                    continue;
+                }
+                WorkOrder order = view.get(id);
+                examined++;
+                if (order != null && matches(order)) {
+                    orders.add(order);
+                }
+            }
+        }
+        steps.add("recheck " + examined + " fetched orders against all predicates");
+        return new Result(orders, "index:" + driver.field.param, steps, examined, micros(start));
+    }
+
+    private Result scan(WorkOrderStore.ReadView view, int size, List<String> steps, long start) {
+        List<Collection<WorkOrder>> partitions = view.partitions();
+        List<WorkOrder> orders;
+        String strategy;
+        if (size >= PARALLEL_SCAN_THRESHOLD) {
+            strategy = "parallel-scan";
+            steps.add("fork-join scan of " + partitions.size() + " partitions on "
+                + ForkJoinPool.commonPool().getParallelism() + " workers");
+            orders = ForkJoinPool.commonPool().invoke(new ScanTask(partitions, 0, partitions.size()));
+        } else {
+            strategy = "scan";
+            steps.add("sequential scan of " + partitions.size() + " partitions (below "
+                + PARALLEL_SCAN_THRESHOLD + " orders)");
+            orders = new ScanTask(partitions, 0, partitions.size()).compute();
+        }
+        return new Result(orders, strategy, steps, size, micros(start));
+    }
+
+    /** Scans a range of partitions, splitting it in halves down to single partitions. */
+    @SuppressWarnings("serial") // ForkJoinTask is Serializable, but a scan never leaves the JVM
+    private final class ScanTask extends RecursiveTask<List<WorkOrder>> {
+        private final List<Collection<WorkOrder>> partitions;
+        private final int from;
+        private final int to;
+
+        ScanTask(List<Collection<WorkOrder>> partitions, int from, int to) {
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<WorkOrder> compute() {
+            if (to - from > 1 && inForkJoinPool()) {
+                int middle = (from + to) >>> 1;
+                ScanTask right = new ScanTask(partitions, middle, to);
+                right.fork();
+                List<WorkOrder> orders = new ScanTask(partitions, from, middle).compute();
+                orders.addAll(right.join());
+                return orders;
+            }
+            List<WorkOrder> orders = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                for (WorkOrder order : partitions.get(i)) {
+                    if (matches(order)) {
+                        orders.add(order);
+                    }
+                }
+            }
+            return orders;
+        }
+    }
+
+    /** True if the order satisfies every predicate. */
+    boolean matches(WorkOrder order) {
+        for (Predicate predicate : predicates) {
+            if (!predicate.matches(order)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean inAll(Long id, List<List<Set<Long>>> otherSets) {
+        for (List<Set<Long>> sets : otherSets) {
+            boolean found = false;
+            for (Set<Long> ids : sets) {
+                if (ids.contains(id)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long micros(long start) {
+        return (System.nanoTime() - start) / 1_000;
+    }
+
+    /** The plan and counters of an executed query, for ?explain=true. */
+    String explainJson(Result result, int returned) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"predicates\":[");
+        for (int i = 0; i < predicates.size(); i++) {
+            sb.append(i > 0 ? "," : "").append('"').append(escape(predicates.get(i).toString())).append('"');
+        }
+        sb.append("],\"strategy\":\"").append(result.strategy).append("\",\"steps\":[");
+        for (int i = 0; i < result.steps.size(); i++) {
+            sb.append(i > 0 ? "," : "").append('"').append(escape(result.steps.get(i))).append('"');
+        }
+        return sb.append("],\"examined\":").append(result.examined)
+            .append(",\"matched\":").append(result.orders.size())
+            .append(",\"returned\":").append(returned)
+            .append(",\"micros\":").append(result.micros)
+            .append('}').toString();
+    }
+
+    private static String escape(String str) {
+        return str.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,568 @@
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory work order storage.
+ *
+ * All writes are serialized on the store and numbered with a sequence, and
+ * registered listeners see every mutation in that order while the store is
+ * still locked. Replication streams this mutation log to followers, which
+ * apply it with {@link #apply(Mutation)}.
+ *
+ * Orders are immutable: an update replaces the stored instance.
+ *
+ * In a sharded setup each node's store hands out only the ids of its own
+ * partition, see {@link ShardLayout}.
+ *
+ * Orders are spread over PARTITIONS maps by id so that queries can scan
+ * them in parallel, and indexed by status, license plate and due date.
+ * Reads are lock-free; an index may briefly lag behind a concurrent write,
+ * so {@link WorkOrderQuery} rechecks every order it gets from one.
+ *
+ * Every id maps to a chain of versions, newest first, each stamped with the
+ * sequence of the write that made it; a delete leaves a version without an
+ * order. A {@link ReadView} reads the newest version at or below its sequence,
+ * so it sees the store exactly as it was after that write, however long it
+ * reads and whatever is written meanwhile. Writers never wait for views.
+ *
+ * Older versions are reclaimed on the write path once neither an open view
+ * nor the retention window needs them: the last retainSequences sequences
+ * stay readable with {@link #openView(long)}. Until then their ids also stay
+ * in the indexes, which hold the values of all retained versions.
+ */
+final class WorkOrderStore {
+
+    interface Listener {
+        void onMutation(Mutation mutation);
+    }
+
+    static final class Mutation {
+        enum Type { PUT, DELETE }
+
+        final long sequence;
+        final Type type;
+        final long id;
+        final WorkOrder order; // null for DELETE
+
+        Mutation(long sequence, Type type, long id, WorkOrder order) {
+            this.sequence = sequence;
+            this.type = type;
+            this.id = id;
+            this.order = order;
+        }
+    }
+
+    /** All orders as of one sequence number. */
+    static final class Snapshot {
+        final long sequence;
+        final List<WorkOrder> orders;
+
+        Snapshot(long sequence, List<WorkOrder> orders) {
+            this.sequence = sequence;
+            this.orders = orders;
+        }
+    }
+
+    /**
+     * The store as of one sequence number. Reads never block and never see a
+     * later write. Close it promptly: versions it can see are kept until then.
+     */
+    final class ReadView implements AutoCloseable {
+        final long sequence;
+        private boolean closed;
+
+        private ReadView(long sequence) {
+            this.sequence = sequence;
+        }
+
+        WorkOrder get(long id) {
+            return visible(partition(id).get(id), sequence);
+        }
+
+        /** The orders of each partition as of this view, for parallel scans. */
+        List<Collection<WorkOrder>> partitions() {
+            return partitionsAt(sequence);
+        }
+
+        /** The current number of orders; exact only for a view of the latest sequence. */
+        int size() {
+            return WorkOrderStore.this.size();
+        }
+
+        /** The store, for its indexes; they cover this view's orders, plus others to recheck. */
+        WorkOrderStore store() {
+            return WorkOrderStore.this;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                unpin(sequence);
+            }
+        }
+    }
+
+    static final int PARTITIONS = 16;
+
+    private final List<Map<Long, Version>> partitions = new ArrayList<>(PARTITIONS);
+    private final Map<WorkOrder.Status, Set<Long>> statusIndex = new EnumMap<>(WorkOrder.Status.class);
+    private final Map<String, Set<Long>> plateIndex = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Long>> dueDateIndex = new ConcurrentHashMap<>();
+    private final ShardLayout layout;
+    private final int shard;
+    private final long retainSequences;
+    private final AtomicLong idGenerator = new AtomicLong(); // ordinal of the next id in this shard
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long sequence;
+    private volatile int size;
+
+    // MVCC bookkeeping: open views per sequence, and the writes that left
+    // older versions behind, in sequence order; both guarded by the store lock
+    // except pins, which views take and drop without it
+    private final ConcurrentSkipListMap<Long, Integer> pins = new ConcurrentSkipListMap<>();
+    private final ArrayDeque<Version> superseded = new ArrayDeque<>();
+    private volatile long horizon; // no view may open below this
+    private int versions;
+
+    WorkOrderStore() {
+        this(ShardLayout.SINGLE, 0, 0);
+    }
+
+    WorkOrderStore(ShardLayout layout, int shard) {
+        this(layout, shard, 0);
+    }
+
+    WorkOrderStore(ShardLayout layout, int shard, long retainSequences) {
+        layout.checkShard(shard);
+        if (retainSequences < 0) {
+            throw new IllegalArgumentException("retainSequences must not be negative: " + retainSequences);
+        }
+        this.layout = layout;
+        this.shard = shard;
+        this.retainSequences = retainSequences;
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions.add(new ConcurrentHashMap<>());
+        }
+        // filled once, never structurally modified afterwards: safe to read without locking
+        for (WorkOrder.Status status : WorkOrder.Status.values()) {
+            statusIndex.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /** The current version of an order. */
+    WorkOrder get(long id) {
+        Version head = partition(id).get(id);
+        return head != null ? head.order : null;
+    }
+
+    /** A copy of all orders. */
+    List<WorkOrder> values() {
+        List<WorkOrder> values = new ArrayList<>(size());
+        for (Collection<WorkOrder> partition : partitions()) {
+            for (WorkOrder order : partition) {
+                values.add(order);
+            }
+        }
+        return values;
+    }
+
+    /** Live views of the orders of each partition, for parallel scans. */
+    List<Collection<WorkOrder>> partitions() {
+        return partitionsAt(Long.MAX_VALUE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // --- INDEXES: ids per value, read-only views ---
+
+    Set<Long> idsWithStatus(WorkOrder.Status status) {
+        return Collections.unmodifiableSet(statusIndex.get(status));
+    }
+
+    /** Plates are indexed case-insensitively, like the licensePlate filter matches. */
+    Set<Long> idsWithPlate(String licensePlate) {
+        return Collections.unmodifiableSet(plateIndex.getOrDefault(plateKey(licensePlate), Set.of()));
+    }
+
+    Set<Long> idsDueOn(int dueDate) {
+        return Collections.unmodifiableSet(dueDateIndex.getOrDefault(dueDate, Set.of()));
+    }
+
+    static String plateKey(String licensePlate) {
+        return licensePlate.toUpperCase(Locale.ROOT);
+    }
+
+    /** Sequence number of the last applied mutation. */
+    long sequence() {
+        return sequence;
+    }
+
+    // --- SNAPSHOT READS ---
+
+    /** A view of the latest sequence. */
+    ReadView openView() {
+        while (true) {
+            long latest = sequence;
+            pin(latest);
+            // a write since reading the sequence may already have moved the horizon past it
+            if (latest >= horizon) {
+                return new ReadView(latest);
+            }
+            unpin(latest);
+        }
+    }
+
+    /**
+     * A view as of an earlier sequence, or null if its versions are no longer
+     * retained; see {@link #oldestSequence()}. The sequence must not be ahead
+     * of {@link #sequence()}.
+     */
+    ReadView openView(long asOf) {
+        if (asOf > sequence) {
+            throw new IllegalArgumentException("sequence " + asOf + " is ahead of the store at " + sequence);
+        }
+        pin(asOf);
+        if (asOf >= horizon) {
+            return new ReadView(asOf);
+        }
+        unpin(asOf);
+        return null;
+    }
+
+    /** The oldest sequence a view can currently be opened at. */
+    long oldestSequence() {
+        return horizon;
+    }
+
+    /** Versions kept only for views: replaced and deleted orders not reclaimed yet. */
+    synchronized int retainedVersions() {
+        return versions - size;
+    }
+
+    // the writes lock in a block rather than the method, so that their
+    // StoreWrite events include the wait for the lock
+
+    WorkOrder create(String licensePlate, String description, WorkOrder.Status status, int dueDate) {
+        WerkstattEvents.StoreWrite event = WerkstattEvents.StoreWrite.start("create");
+        WorkOrder order;
+        synchronized (this) {
+            event.locked();
+            long id = layout.idAt(shard, idGenerator.getAndIncrement());
+            order = new WorkOrder(id, licensePlate, description, status, dueDate);
+            put(sequence + 1, id, order);
+            publish(Mutation.Type.PUT, id, order);
+        }
+        event.finish(order.id, true);
+        return order;
+    }
+
+    /** Applies the non-null fields to an order; returns the new version, or null if there is none. */
+    WorkOrder update(long id, String licensePlate, String description,
+                     WorkOrder.Status status, Integer dueDate) {
+        WerkstattEvents.StoreWrite event = WerkstattEvents.StoreWrite.start("update");
+        WorkOrder updated = null;
+        synchronized (this) {
+            event.locked();
+            WorkOrder current = get(id);
+            if (current != null) {
+                updated = current.withChanges(licensePlate, description, status, dueDate);
+                put(sequence + 1, id, updated);
+                publish(Mutation.Type.PUT, id, updated);
+            }
+        }
+        event.finish(id, updated != null);
+        return updated;
+    }
+
+    boolean delete(long id) {
+        WerkstattEvents.StoreWrite event = WerkstattEvents.StoreWrite.start("delete");
+        boolean deleted;
+        synchronized (this) {
+            event.locked();
+            deleted = get(id) != null;
+            if (deleted) {
+                put(sequence + 1, id, null);
+                publish(Mutation.Type.DELETE, id, null);
+            }
+        }
+        event.finish(id, deleted);
+        return deleted;
+    }
+
+    /** Applies a mutation received from the leader, keeping its sequence number. */
+    void apply(Mutation mutation) {
+        WerkstattEvents.StoreWrite event = WerkstattEvents.StoreWrite.start("apply");
+        synchronized (this) {
+            event.locked();
+            if (mutation.type == Mutation.Type.PUT) {
+                put(mutation.sequence, mutation.id, mutation.order);
+                advanceIdGenerator(mutation.id);
+            } else if (get(mutation.id) != null) {
+                put(mutation.sequence, mutation.id, null);
+            }
+            sequence = mutation.sequence;
+            for (Listener listener : listeners) {
+                listener.onMutation(mutation);
+            }
+            reclaim();
+        }
+        event.finish(mutation.id, true);
+    }
+
+    /**
+     * Replaces the whole content, used when a follower bootstraps from a
+     * snapshot. Earlier sequences are gone afterwards.
+     */
+    synchronized void restore(Snapshot snapshot) {
+        for (Map<Long, Version> partition : partitions) {
+            partition.clear();
+        }
+        statusIndex.values().forEach(Set::clear);
+        plateIndex.clear();
+        dueDateIndex.clear();
+        superseded.clear();
+        versions = 0;
+        size = 0;
+        idGenerator.set(0);
+        for (WorkOrder order : snapshot.orders) {
+            put(snapshot.sequence, order.id, order);
+            advanceIdGenerator(order.id);
+        }
+        sequence = snapshot.sequence;
+        horizon = snapshot.sequence;
+    }
+
+    /**
+     * Takes a snapshot and registers the listener in one step, so the listener
+     * sees exactly the mutations that come after the snapshot.
+     */
+    synchronized Snapshot snapshotAndListen(Listener listener) {
+        Snapshot snapshot = new Snapshot(sequence, values());
+        listeners.add(listener);
+        return snapshot;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // --- VERSIONS ---
+
+    /** One state of an order; order is null once deleted. */
+    private static final class Version {
+        final long sequence;
+        final long id;
+        final WorkOrder order;
+        Version previous; // cut by reclaim() once no view can reach past it
+
+        Version(long sequence, long id, WorkOrder order, Version previous) {
+            this.sequence = sequence;
+            this.id = id;
+            this.order = order;
+            this.previous = previous;
+        }
+    }
+
+    // the order as of the given sequence, walking back from the newest version
+    private static WorkOrder visible(Version version, long asOf) {
+        while (version != null && version.sequence > asOf) {
+            version = version.previous;
+        }
+        return version != null ? version.order : null;
+    }
+
+    private List<Collection<WorkOrder>> partitionsAt(long asOf) {
+        List<Collection<WorkOrder>> views = new ArrayList<>(PARTITIONS);
+        for (Map<Long, Version> partition : partitions) {
+            views.add(new AbstractCollection<WorkOrder>() {
+                @Override
+                public Iterator<WorkOrder> iterator() {
+                    return new VisibleOrders(partition.values().iterator(), asOf);
+                }
+
+                @Override
+                public int size() {
+                    int count = 0;
+                    for (Version version : partition.values()) {
+                        if (visible(version, asOf) != null) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+            });
+        }
+        return views;
+    }
+
+    /** The orders visible at a sequence, skipping ids that did not exist then. */
+    private static final class VisibleOrders implements Iterator<WorkOrder> {
+        private final Iterator<Version> versions;
+        private final long asOf;
+        private WorkOrder next;
+
+        VisibleOrders(Iterator<Version> versions, long asOf) {
+            this.versions = versions;
+            this.asOf = asOf;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && versions.hasNext()) {
+                next = visible(versions.next(), asOf);
+            }
+            return next != null;
+        }
+
+        @Override
+        public WorkOrder next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            WorkOrder order = next;
+            next = null;
+            return order;
+        }
+    }
+
+    private void pin(long asOf) {
+        pins.merge(asOf, 1, Integer::sum);
+    }
+
+    private void unpin(long asOf) {
+        pins.computeIfPresent(asOf, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    // callers hold the store lock; order null deletes
+    private void put(long versionSequence, long id, WorkOrder order) {
+        Map<Long, Version> partition = partition(id);
+        Version previous = partition.get(id);
+        Version version = new Version(versionSequence, id, order, previous);
+        partition.put(id, version);
+        versions++;
+        if (order != null) {
+            index(order);
+        }
+        boolean existed = previous != null && previous.order != null;
+        size += (order != null ? 1 : 0) - (existed ? 1 : 0);
+        if (previous != null) {
+            superseded.addLast(version);
+        }
+    }
+
+    /**
+     * Drops the versions no view can see any more. The horizon is raised
+     * before the pins are read, and views pin before they read the horizon,
+     * so a view either fails to open or is seen here.
+     */
+    private void reclaim() {
+        long retained = sequence - retainSequences;
+        if (retained > horizon) {
+            horizon = retained;
+        }
+        Map.Entry<Long, Integer> oldestPin = pins.firstEntry();
+        long watermark = oldestPin != null ? Math.min(horizon, oldestPin.getKey()) : horizon;
+        while (!superseded.isEmpty() && superseded.peekFirst().sequence <= watermark) {
+            Version newer = superseded.pollFirst();
+            Version cut = newer.previous;
+            if (cut == null) {
+                continue; // already dropped behind a later write
+            }
+            newer.previous = null;
+            for (Version dropped = cut; dropped != null; dropped = dropped.previous) {
+                versions--;
+                if (dropped.order != null) {
+                    unindexUnlessRetained(dropped.order, newer);
+                }
+            }
+            // a delete nobody can look behind any more: forget the id
+            Map<Long, Version> partition = partition(newer.id);
+            if (newer.order == null && partition.get(newer.id) == newer) {
+                partition.remove(newer.id);
+                versions--;
+            }
+        }
+    }
+
+    private void index(WorkOrder order) {
+        statusIndex.get(order.status).add(order.id);
+        plateIndex.computeIfAbsent(plateKey(order.licensePlate), k -> ConcurrentHashMap.newKeySet()).add(order.id);
+        dueDateIndex.computeIfAbsent(order.dueDate, k -> ConcurrentHashMap.newKeySet()).add(order.id);
+    }
+
+    // removes the index entries of a dropped version that no version still kept shares
+    private void unindexUnlessRetained(WorkOrder dropped, Version newer) {
+        boolean status = true;
+        boolean plate = true;
+        boolean dueDate = true;
+        for (Version kept = partition(dropped.id).get(dropped.id); kept != null; kept = kept.previous) {
+            if (kept.order != null) {
+                status &= kept.order.status != dropped.status;
+                plate &= !plateKey(kept.order.licensePlate).equals(plateKey(dropped.licensePlate));
+                dueDate &= kept.order.dueDate != dropped.dueDate;
+            }
+            if (kept == newer) {
+                break;
+            }
+        }
+        if (status) {
+            statusIndex.get(dropped.status).remove(dropped.id);
+        }
+        if (plate) {
+            removeFromIndex(plateIndex, plateKey(dropped.licensePlate), dropped.id);
+        }
+        if (dueDate) {
+            removeFromIndex(dueDateIndex, dropped.dueDate, dropped.id);
+        }
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<Long>> index, K key, long id) {
+        Set<Long> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private Map<Long, Version> partition(long id) {
+        return partitions.get((int) Math.floorMod(id, (long) PARTITIONS));
+    }
+
+    // keeps ids handed out after a failover above the replicated ones
+    private void advanceIdGenerator(long id) {
+        if (layout.ownerOf(id) == shard) {
+            idGenerator.accumulateAndGet(layout.ordinalOf(id) + 1, Math::max);
+        }
+    }
+
+    private void publish(Mutation.Type type, long id, WorkOrder order) {
+        Mutation mutation = new Mutation(++sequence, type, id, order);
+        for (Listener listener : listeners) {
+            listener.onMutation(mutation);
+        }
+        reclaim();
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Bytes allocated per request for reading a body and encoding a JSON response:
+ * the previous readNBytes / new String / getBytes path against the pool
+ * Measured with the per-thread allocation counter of the HotSpot ThreadMXBean,
+ * so the numbers are exact for this thread and independent of GC timing
+ */
+public class BufferAllocationBenchmark {
+
+    private static final int ROUNDS = 20_000;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=".repeat(70));
+        System.out.println("BUFFER ALLOCATION - bytes allocated per request, " + ROUNDS + " requests");
+        System.out.println("=".repeat(70));
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        WorkOrderStore store = new WorkOrderStore();
+        for (int i = 0; i < 50; i++) {
+            store.create("SB-XY-" + i, "Bremsscheiben und Beläge wechseln", WorkOrder.Status.PENDING,
+                WorkOrder.parseDueDate("2025-10-15") + i);
+        }
+        List<WorkOrder> orders = store.values();
+        String order = "{\"licensePlate\":\"KL-AA-007\",\"description\":\"Ölwechsel\",\"status\":\"PENDING\",\"dueDate\":\"2025-11-01\"}";
+        byte[] requestBody = order.getBytes(StandardCharsets.UTF_8);
+        BufferPool pool = new BufferPool(1024 * 1024, false);
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "\nWarm-up round:" : "\nMeasured round (bytes per request):");
+            System.out.println(String.format("  %-28s %14s %14s", "", "before", "pooled"));
+
+            long before = allocated(threads);
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += readBodyUnpooled(new ByteArrayInputStream(requestBody)).length();
+            }
+            long unpooledRead = (allocated(threads) - before) / ROUNDS;
+            before = allocated(threads);
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += readBodyPooled(pool, new ByteArrayInputStream(requestBody)).length();
+            }
+            long pooledRead = (allocated(threads) - before) / ROUNDS;
+            System.out.println(String.format("  %-28s %14d %14d", "POST body (" + requestBody.length + " B)",
+                unpooledRead, pooledRead));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            WorkOrderProjection projection = WorkOrderProjection.ALL;
+            before = allocated(threads);
+            for (int i = 0; i < ROUNDS; i++) {
+                out.reset();
+                out.write(projection.toJson(orders).getBytes(StandardCharsets.UTF_8));
+            }
+            long unpooledWrite = (allocated(threads) - before) / ROUNDS;
+            before = allocated(threads);
+            for (int i = 0; i < ROUNDS; i++) {
+                out.reset();
+                try (BufferPool.Lease response = pool.encodeUtf8(projection.toJsonBuilder(orders))) {
+                    response.writeTo(out);
+                }
+            }
+            long pooledWrite = (allocated(threads) - before) / ROUNDS;
+            System.out.println(String.format("  %-28s %14d %14d", "GET list (" + out.size() + " B)",
+                unpooledWrite, pooledWrite));
+        }
+        System.out.println("\n  Pool hits: " + pool.hits() + ", misses: " + pool.misses());
+        System.out.println("=".repeat(70));
+    }
+
+    // the handler before pooling: readNBytes into a fresh array, then a String
+    private static String readBodyUnpooled(InputStream in) throws IOException {
+        byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readBodyPooled(BufferPool pool, InputStream in) throws IOException {
+        try (BufferPool.Lease body = pool.read(in, 0, MAX_BODY_BYTES)) {
+            return new String(body.array, 0, body.length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long allocated(com.sun.management.ThreadMXBean threads) {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+}
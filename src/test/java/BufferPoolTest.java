@@ -0,0 +1,221 @@
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test class for the request/response buffer pool
+ * Runs with leak detection on; the last test sends requests through the real
+ * handlers and checks that every buffer they took was given back
+ *
+ */
+public class BufferPoolTest {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(70));
+        System.out.println("WERKSTATT BUFFER POOL - TESTS");
+        System.out.println("=".repeat(70));
+
+        int totalTests = 0;
+        int passedTests = 0;
+
+        // Test 1: size classes and reuse
+        totalTests++;
+        System.out.println("\n[TEST 1] Size classes, reuse and oversized arrays");
+        if (testSizeClassesAndReuse()) {
+            passedTests++;
+            printSuccess("Released arrays handed out again, oversized ones not pooled");
+        } else {
+            printFailure("Size classes or reuse wrong");
+        }
+
+        // Test 2: reading bodies
+        totalTests++;
+        System.out.println("\n[TEST 2] read() with and without Content-Length, over the limit");
+        if (testRead()) {
+            passedTests++;
+            printSuccess("Bodies read completely, oversized body detected");
+        } else {
+            printFailure("Body reading failed");
+        }
+
+        // Test 3: UTF-8 encoding
+        totalTests++;
+        System.out.println("\n[TEST 3] encodeUtf8 matches String.getBytes(UTF_8)");
+        if (testEncodeUtf8()) {
+            passedTests++;
+            printSuccess("ASCII, umlauts, CJK, emoji and lone surrogates encoded identically");
+        } else {
+            printFailure("Encoding differs");
+        }
+
+        // Test 4: leak detection
+        totalTests++;
+        System.out.println("\n[TEST 4] Leak detection: unreleased, double release, poisoning");
+        if (testLeakDetection()) {
+            passedTests++;
+            printSuccess("Leak reported with its acquire site, double release rejected, released array poisoned");
+        } else {
+            printFailure("Leak detection failed");
+        }
+
+        // Test 5: the handlers give every buffer back
+        totalTests++;
+        System.out.println("\n[TEST 5] No leaks after requests through RequestHandler");
+        if (testHandlersRelease()) {
+            passedTests++;
+            printSuccess("All buffers released, including on errors");
+        } else {
+            printFailure("Handlers leaked buffers");
+        }
+
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("TEST SUMMARY");
+        System.out.println("=".repeat(70));
+        System.out.println("Total tests:  " + totalTests);
+        System.out.println("Passed:    " + passedTests);
+        System.out.println("Failed:    " + (totalTests - passedTests));
+        System.out.println("=".repeat(70));
+    }
+
+    private static boolean testSizeClassesAndReuse() {
+        BufferPool pool = new BufferPool(64 * 1024, true);
+        byte[] small = pool.acquire(10);
+        byte[] medium = pool.acquire(1500);
+        byte[] huge = pool.acquire(100_000);
+        boolean ok = small.length == 1024 && medium.length == 2048 && huge.length == 100_000;
+        pool.release(small);
+        pool.release(medium);
+        pool.release(huge);
+        ok &= pool.acquire(1000) == small && pool.acquire(2000) == medium && pool.acquire(100_000) != huge;
+        System.out.println("  Hits: " + pool.hits() + ", misses: " + pool.misses());
+        return ok && pool.hits() == 2 && pool.misses() == 4;
+    }
+
+    private static boolean testRead() throws Exception {
+        BufferPool pool = new BufferPool(1024 * 1024, true);
+        byte[] content = new byte[5000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        boolean ok = true;
+        try (BufferPool.Lease known = pool.read(new ByteArrayInputStream(content), content.length, 10_000);
+             BufferPool.Lease unknown = pool.read(new ByteArrayInputStream(content), 0, 10_000);
+             BufferPool.Lease empty = pool.read(new ByteArrayInputStream(new byte[0]), 0, 10_000);
+             BufferPool.Lease tooLarge = pool.read(new ByteArrayInputStream(content), 0, 4000)) {
+            ok &= Arrays.equals(Arrays.copyOf(known.array, known.length), content);
+            ok &= Arrays.equals(Arrays.copyOf(unknown.array, unknown.length), content);
+            ok &= empty.length == 0;
+            ok &= tooLarge.length == 4001;
+        }
+        return ok && pool.leaks().isEmpty();
+    }
+
+    private static boolean testEncodeUtf8() {
+        BufferPool pool = new BufferPool(1024 * 1024, true);
+        String[] samples = {
+            "", "{\"licensePlate\":\"SB-XY-123\"}", "Ölwechsel, TÜV, Bremsflüssigkeit prüfen",
+            "東京 → München", "Reifen 🚗🔧 wechseln", "lone \uD83D surrogate \uDE97 end",
+            "x".repeat(70_000) + "ß"
+        };
+        boolean ok = true;
+        for (String sample : samples) {
+            try (BufferPool.Lease lease = pool.encodeUtf8(new StringBuilder(sample))) {
+                ok &= Arrays.equals(Arrays.copyOf(lease.array, lease.length), sample.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return ok && pool.leaks().isEmpty();
+    }
+
+    private static boolean testLeakDetection() {
+        BufferPool pool = new BufferPool(1024 * 1024, true);
+        byte[] leaked = pool.acquire(100);
+        byte[] released = pool.acquire(100);
+        Arrays.fill(released, (byte) 1);
+        pool.release(released);
+
+        List<Throwable> leaks = pool.leaks();
+        boolean ok = leaks.size() == 1
+            && leaks.get(0).getStackTrace()[1].getMethodName().equals("testLeakDetection")
+            && released[0] == BufferPool.POISON;
+        System.out.println("  Leak: " + leaks.get(0) + " at " + leaks.get(0).getStackTrace()[1]);
+
+        try {
+            pool.release(released);
+            ok = false;
+        } catch (IllegalStateException e) {
+            System.out.println("  Double release: " + e.getMessage());
+        }
+        try {
+            pool.release(new byte[1024]);
+            ok = false;
+        } catch (IllegalStateException e) {
+            // foreign array
+        }
+        pool.release(leaked);
+        return ok && pool.leaks().isEmpty();
+    }
+
+    private static boolean testHandlersRelease() throws Exception {
+        BufferPool pool = new BufferPool(1024 * 1024, true);
+        BufferPool previous = BufferPool.shared();
+        BufferPool.install(pool);
+        WorkOrderStore store = new WorkOrderStore();
+        store.create("SB-XY-123", "Bremsscheiben wechseln", WorkOrder.Status.PENDING, WorkOrder.parseDueDate("2025-10-15"));
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/").setHandler(new WerkstattRESTServer.RequestHandler(ServerConfig.load(), store));
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getAddress().getPort();
+            String order = "{\"licensePlate\":\"KL-AA-007\",\"description\":\"Ölwechsel\",\"status\":\"PENDING\",\"dueDate\":\"2025-11-01\"}";
+            byte[] binary = new WorkOrderCodec.Writer()
+                .fields("HOM-Z-42", "Klimaanlage prüfen", WorkOrder.Status.PENDING, WorkOrder.parseDueDate("2025-12-01"))
+                .toByteArray();
+
+            int[] statuses = {
+                send(client, HttpRequest.newBuilder(URI.create(base + "/workorders")).GET()),
+                send(client, HttpRequest.newBuilder(URI.create(base + "/workorders"))
+                    .header("Accept", WorkOrderCodec.MEDIA_TYPE).GET()),
+                send(client, HttpRequest.newBuilder(URI.create(base + "/workorders"))
+                    .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(order))),
+                send(client, HttpRequest.newBuilder(URI.create(base + "/workorders"))
+                    .header("Content-Type", WorkOrderCodec.MEDIA_TYPE).POST(HttpRequest.BodyPublishers.ofByteArray(binary))),
+                send(client, HttpRequest.newBuilder(URI.create(base + "/workorders/1"))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString("{\"status\":\"COMPLETED\"}"))),
+                // no Content-Length: read into growing pooled arrays until the limit is hit
+                send(client, HttpRequest.newBuilder(URI.create(base + "/workorders"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(
+                        () -> new ByteArrayInputStream(new byte[70_000])))),
+                send(client, HttpRequest.newBuilder(URI.create(base + "/workorders/99")).GET()),
+            };
+            System.out.println("  Statuses: " + Arrays.toString(statuses) + ", hits: " + pool.hits()
+                + ", misses: " + pool.misses() + ", leaks: " + pool.leaks().size());
+            return Arrays.equals(statuses, new int[] {200, 200, 201, 201, 200, 413, 404}) && pool.leaks().isEmpty();
+        } finally {
+            server.stop(0);
+            BufferPool.install(previous);
+        }
+    }
+
+    private static int send(HttpClient client, HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+    private static void printSuccess(String message) {
+        System.out.println("  Succeeded: " + message);
+    }
+
+    private static void printFailure(String message) {
+        System.out.println("  Failed: " + message);
+    }
+}
@@ -0,0 +1,94 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Cost of finding the orders to remind per day: the timing wheel's tick
+ * against the previous approach of fetching all orders and filtering them
+ * Orders are open and due evenly over the next DAYS days; the store size is
+ * varied while the orders due per day stay the same share
+ */
+public class DueDateSchedulerBenchmark {
+
+    private static final int DAYS = 3 * 365;
+    private static final int SIMULATED_DAYS = 360;
+    private static final int SCAN_ROUNDS = 20;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.println("=".repeat(70));
+        System.out.println("DUE-DATE REMINDERS - timing wheel tick vs full scan, " + SIMULATED_DAYS + " days");
+        System.out.println("=".repeat(70));
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "\nWarm-up round:" : "\nMeasured round (us per day):");
+            System.out.println(String.format("  %10s %10s %12s %12s", "orders", "due/day", "full scan", "wheel tick"));
+            for (int size : new int[] {10_000, 100_000, 500_000}) {
+                run(size);
+            }
+        }
+        System.out.println("=".repeat(70));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void run(int size) {
+        int start = WorkOrder.parseDueDate("2025-10-15");
+        WorkOrderStore store = new WorkOrderStore();
+        for (int i = 0; i < size; i++) {
+            store.create("SB-XY-" + (i % 20_000), "Inspektion", WorkOrder.Status.PENDING, start + 2 + i % DAYS);
+        }
+
+        // the cron job: all orders, keep the open ones due tomorrow
+        long scanStart = System.nanoTime();
+        for (int i = 0; i < SCAN_ROUNDS; i++) {
+            int tomorrow = start + 1 + i;
+            List<WorkOrder> all = store.values();
+            sink += all.stream()
+                .filter(order -> order.status != WorkOrder.Status.COMPLETED && order.dueDate == tomorrow)
+                .count();
+        }
+        double scanMicros = (System.nanoTime() - scanStart) / 1_000.0 / SCAN_ROUNDS;
+
+        DayClock clock = new DayClock(start);
+        DueDateScheduler scheduler = new DueDateScheduler(store, clock, 1, reminders -> sink += reminders.size());
+        scheduler.attach();
+        long tickStart = System.nanoTime();
+        for (int day = 1; day <= SIMULATED_DAYS; day++) {
+            clock.day = start + day;
+            scheduler.tick();
+        }
+        double tickMicros = (System.nanoTime() - tickStart) / 1_000.0 / SIMULATED_DAYS;
+        store.removeListener(scheduler);
+
+        System.out.println(String.format("  %10d %10d %12.1f %12.1f", size, size / DAYS, scanMicros, tickMicros));
+    }
+
+    private static final class DayClock extends Clock {
+        long day;
+
+        DayClock(long day) {
+            this.day = day;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return LocalDate.ofEpochDay(day).atStartOfDay().toInstant(ZoneOffset.UTC);
+        }
+    }
+}
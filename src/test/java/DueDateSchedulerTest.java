@@ -0,0 +1,241 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test class for the due-date reminder scheduler
+ * Drives the scheduler with a hand-set clock and a collecting sink, no threads
+ *
+ */
+public class DueDateSchedulerTest {
+
+    public static void main(String[] args) {
+        System.out.println("=".repeat(70));
+        System.out.println("WERKSTATT DUE-DATE REMINDERS - TESTS");
+        System.out.println("=".repeat(70));
+
+        int totalTests = 0;
+        int passedTests = 0;
+
+        // Test 1: DUE lead days before, OVERDUE the day after
+        totalTests++;
+        System.out.println("\n[TEST 1] DUE and OVERDUE reminders fire on their days");
+        if (testDueAndOverdue()) {
+            passedTests++;
+            printSuccess("DUE on 2025-10-14, OVERDUE on 2025-10-16");
+        } else {
+            printFailure("Reminders fired on the wrong days");
+        }
+
+        // Test 2: PUT / complete / delete
+        totalTests++;
+        System.out.println("\n[TEST 2] Rescheduling on due date change, cancel on COMPLETED and DELETE");
+        if (testRescheduling()) {
+            passedTests++;
+            printSuccess("Moved order re-armed, completed and deleted orders silent");
+        } else {
+            printFailure("Rescheduling failed");
+        }
+
+        // Test 3: orders already overdue when the scheduler starts
+        totalTests++;
+        System.out.println("\n[TEST 3] Overdue orders are reminded on the first tick");
+        if (testOverdueAtStart()) {
+            passedTests++;
+            printSuccess("Overdue order reminded once, completed order ignored");
+        } else {
+            printFailure("Overdue orders at start not reminded");
+        }
+
+        // Test 4: cascading through the upper wheels
+        totalTests++;
+        System.out.println("\n[TEST 4] 2000 random due dates over 30 years fire on the exact day");
+        if (testCascading()) {
+            passedTests++;
+            printSuccess("Every reminder fired on its day, none twice");
+        } else {
+            printFailure("Reminders lost or fired on the wrong day");
+        }
+
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("TEST SUMMARY");
+        System.out.println("=".repeat(70));
+        System.out.println("Total tests:  " + totalTests);
+        System.out.println("Passed:    " + passedTests);
+        System.out.println("Failed:    " + (totalTests - passedTests));
+        System.out.println("=".repeat(70));
+    }
+
+    private static boolean testDueAndOverdue() {
+        ManualClock clock = new ManualClock("2025-10-10");
+        WorkOrderStore store = new WorkOrderStore();
+        store.create("SB-XY-123", "Bremsscheiben wechseln", WorkOrder.Status.PENDING, day("2025-10-15"));
+        Collector sink = new Collector();
+        DueDateScheduler scheduler = new DueDateScheduler(store, clock, 1, sink);
+        scheduler.attach();
+
+        boolean ok = true;
+        for (String date : new String[] {"2025-10-10", "2025-10-13"}) {
+            clock.set(date);
+            scheduler.tick();
+            ok &= sink.reminders.isEmpty();
+        }
+        clock.set("2025-10-14");
+        scheduler.tick();
+        ok &= sink.matches("DUE 1 2025-10-14");
+        clock.set("2025-10-15");
+        scheduler.tick();
+        ok &= sink.reminders.size() == 1;
+        clock.set("2025-10-16");
+        scheduler.tick();
+        ok &= sink.matches("DUE 1 2025-10-14", "OVERDUE 1 2025-10-16");
+        ok &= scheduler.scheduled() == 0;
+        System.out.println("  Reminders: " + sink.lines());
+        return ok;
+    }
+
+    private static boolean testRescheduling() {
+        ManualClock clock = new ManualClock("2025-10-01");
+        WorkOrderStore store = new WorkOrderStore();
+        WorkOrder moved = store.create("SB-XY-123", "Bremsscheiben wechseln", WorkOrder.Status.PENDING, day("2025-10-05"));
+        WorkOrder completed = store.create("KL-AA-007", "Ölwechsel", WorkOrder.Status.IN_PROGRESS, day("2025-10-05"));
+        WorkOrder deleted = store.create("SB-BB-999", "TÜV Hauptuntersuchung", WorkOrder.Status.PENDING, day("2025-10-05"));
+        Collector sink = new Collector();
+        DueDateScheduler scheduler = new DueDateScheduler(store, clock, 0, sink);
+        scheduler.attach();
+
+        store.update(moved.id, null, null, null, day("2025-10-20"));
+        store.update(moved.id, null, "Bremsscheiben und Beläge", WorkOrder.Status.IN_PROGRESS, null);
+        store.update(completed.id, null, null, WorkOrder.Status.COMPLETED, null);
+        store.delete(deleted.id);
+
+        clock.set("2025-10-10");
+        scheduler.tick();
+        boolean ok = sink.reminders.isEmpty() && scheduler.scheduled() == 1;
+
+        // reopening re-arms, and it is overdue by now
+        store.update(completed.id, null, null, WorkOrder.Status.PENDING, null);
+        scheduler.tick();
+        clock.set("2025-10-20");
+        scheduler.tick();
+        ok &= sink.matches("OVERDUE 2 2025-10-10", "DUE 1 2025-10-20");
+        System.out.println("  Reminders: " + sink.lines());
+        return ok;
+    }
+
+    private static boolean testOverdueAtStart() {
+        ManualClock clock = new ManualClock("2025-10-15");
+        WorkOrderStore store = new WorkOrderStore();
+        store.create("SB-XY-123", "Bremsscheiben wechseln", WorkOrder.Status.PENDING, day("2025-09-01"));
+        store.create("SB-XY-123", "Klimaanlage prüfen", WorkOrder.Status.COMPLETED, day("2025-08-10"));
+        Collector sink = new Collector();
+        DueDateScheduler scheduler = new DueDateScheduler(store, clock, 1, sink);
+        scheduler.attach();
+
+        scheduler.tick();
+        scheduler.tick();
+        System.out.println("  Reminders: " + sink.lines());
+        return sink.matches("OVERDUE 1 2025-10-15") && scheduler.scheduled() == 0;
+    }
+
+    private static boolean testCascading() {
+        ManualClock clock = new ManualClock("2025-10-15");
+        int start = day("2025-10-15");
+        WorkOrderStore store = new WorkOrderStore();
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            int dueDate = start + 3 + random.nextInt(30 * 365);
+            WorkOrder order = store.create("SB-XY-" + i, "Inspektion", WorkOrder.Status.PENDING, dueDate);
+            expected.put("DUE " + order.id, dueDate - 2);
+            expected.put("OVERDUE " + order.id, dueDate + 1);
+        }
+        Collector sink = new Collector();
+        DueDateScheduler scheduler = new DueDateScheduler(store, clock, 2, sink);
+        scheduler.attach();
+
+        // one tick per day, with a few multi-day jumps like a server that was down
+        int today = start;
+        while (today < start + 30 * 365 + 5) {
+            today += random.nextInt(20) == 0 ? 1 + random.nextInt(200) : 1;
+            clock.set(LocalDate.ofEpochDay(today).toString());
+            scheduler.tick();
+        }
+
+        Map<String, Integer> actual = new HashMap<>();
+        boolean ok = true;
+        for (DueDateScheduler.Reminder reminder : sink.reminders) {
+            ok &= actual.put(reminder.type + " " + reminder.order.id, reminder.day) == null;
+        }
+        ok &= actual.equals(expected) && scheduler.scheduled() == 0;
+        System.out.println("  Reminders fired: " + actual.size() + " of " + expected.size());
+        return ok;
+    }
+
+    private static int day(String date) {
+        return WorkOrder.parseDueDate(date);
+    }
+
+    private static final class Collector implements DueDateScheduler.Sink {
+        final List<DueDateScheduler.Reminder> reminders = new ArrayList<>();
+
+        @Override
+        public void deliver(List<DueDateScheduler.Reminder> batch) {
+            reminders.addAll(batch);
+        }
+
+        List<String> lines() {
+            List<String> lines = new ArrayList<>();
+            for (DueDateScheduler.Reminder reminder : reminders) {
+                lines.add(reminder.type + " " + reminder.order.id + " " + WorkOrder.formatDueDate(reminder.day));
+            }
+            return lines;
+        }
+
+        boolean matches(String... expected) {
+            return lines().equals(List.of(expected));
+        }
+    }
+
+    private static final class ManualClock extends Clock {
+        private Instant now;
+
+        ManualClock(String date) {
+            set(date);
+        }
+
+        void set(String date) {
+            now = LocalDate.parse(date).atTime(9, 0).toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static void printSuccess(String message) {
+        System.out.println("  Succeeded: " + message);
+    }
+
+    private static void printFailure(String message) {
+        System.out.println("  Failed: " + message);
+    }
+}
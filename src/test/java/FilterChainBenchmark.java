@@ -0,0 +1,125 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpPrincipal;
+
+/**
+ * Per-request overhead of the FilterPipeline with 0, 3 and 10 pass-through filters,
+ * next to the JDK's own Filter.Chain for comparison
+ * Runs in-process against a stub exchange, so only the chain itself is measured
+ */
+public class FilterChainBenchmark {
+
+    private static final int WARMUP = 2_000_000;
+    private static final int ITERATIONS = 10_000_000;
+
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=".repeat(70));
+        System.out.println("FILTER CHAIN OVERHEAD - " + ITERATIONS + " requests per run");
+        System.out.println("=".repeat(70));
+
+        HttpHandler handler = exchange -> sink++;
+        HttpExchange exchange = new StubExchange();
+
+        // 10 filters registered but switched off must cost the same as none
+        FilterPipeline.Builder disabled = FilterPipeline.builder();
+        for (int i = 0; i < 10; i++) {
+            disabled.addIf(false, new PassThrough());
+        }
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "\nWarm-up round:" : "\nMeasured round:");
+            run("pipeline,  0 filters", pipeline(0, handler), exchange);
+            run("pipeline, 10 disabled", disabled.build(handler), exchange);
+            run("pipeline,  3 filters", pipeline(3, handler), exchange);
+            run("pipeline, 10 filters", pipeline(10, handler), exchange);
+            run("jdk chain, 3 filters", jdkChain(3, handler), exchange);
+            run("jdk chain,10 filters", jdkChain(10, handler), exchange);
+        }
+        System.out.println("=".repeat(70));
+    }
+
+    private static FilterPipeline pipeline(int filters, HttpHandler handler) {
+        FilterPipeline.Builder builder = FilterPipeline.builder();
+        for (int i = 0; i < filters; i++) {
+            builder.add(new PassThrough());
+        }
+        return builder.build(handler);
+    }
+
+    // What HttpContext.getFilters() does on every request: a new Chain over the list
+    private static HttpHandler jdkChain(int filters, HttpHandler handler) {
+        List<Filter> list = new ArrayList<>();
+        for (int i = 0; i < filters; i++) {
+            list.add(new PassThrough());
+        }
+        return exchange -> new Filter.Chain(list, handler).doFilter(exchange);
+    }
+
+    private static void run(String name, HttpHandler chain, HttpExchange exchange) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            chain.handle(exchange);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            chain.handle(exchange);
+        }
+        double nsPerRequest = (System.nanoTime() - start) / (double) ITERATIONS;
+        System.out.println(String.format("  %-22s %7.2f ns/request", name, nsPerRequest));
+    }
+
+    static class PassThrough extends Filter {
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            sink++;
+            chain.doFilter(exchange);
+        }
+
+        @Override
+        public String description() {
+            return "pass-through";
+        }
+    }
+
+    // Minimal exchange, the benchmarked filters never touch it
+    static class StubExchange extends HttpExchange {
+        private final Headers requestHeaders = new Headers();
+        private final Headers responseHeaders = new Headers();
+        private final URI uri = URI.create("/workorders");
+        private InputStream in = new ByteArrayInputStream(new byte[0]);
+        private OutputStream out = new ByteArrayOutputStream();
+        private int responseCode = -1;
+
+        @Override public Headers getRequestHeaders() { return requestHeaders; }
+        @Override public Headers getResponseHeaders() { return responseHeaders; }
+        @Override public URI getRequestURI() { return uri; }
+        @Override public String getRequestMethod() { return "GET"; }
+        @Override public HttpContext getHttpContext() { return null; }
+        @Override public void close() { }
+        @Override public InputStream getRequestBody() { return in; }
+        @Override public OutputStream getResponseBody() { return out; }
+        @Override public void sendResponseHeaders(int rCode, long responseLength) { responseCode = rCode; }
+        @Override public InetSocketAddress getRemoteAddress() { return new InetSocketAddress("127.0.0.1", 50000); }
+        @Override public int getResponseCode() { return responseCode; }
+        @Override public InetSocketAddress getLocalAddress() { return new InetSocketAddress("127.0.0.1", 8080); }
+        @Override public String getProtocol() { return "HTTP/1.1"; }
+        @Override public Object getAttribute(String name) { return null; }
+        @Override public void setAttribute(String name, Object value) { }
+        @Override public void setStreams(InputStream i, OutputStream o) { in = i; out = o; }
+        @Override public HttpPrincipal getPrincipal() { return null; }
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Throughput and latency of the JDK and NIO engines under the same workload
+ * Both engines run in-process with the real RequestHandler; clients are keep-alive
+ * sockets that each send requests back to back
+ */
+public class HttpEngineBenchmark {
+
+    private static final int ORDERS = 200;
+    private static final int CLIENTS = 16;
+    private static final int REQUESTS_PER_CLIENT = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("werkstatt.port", "0");
+        System.setProperty("werkstatt.maxConcurrentRequests", "1024");
+        ServerConfig config = ServerConfig.load();
+
+        System.out.println("=".repeat(70));
+        System.out.println("HTTP ENGINE COMPARISON - " + CLIENTS + " clients x " + REQUESTS_PER_CLIENT
+            + " GET /workorders/{id}");
+        System.out.println("=".repeat(70));
+
+        for (String engineName : new String[] {"jdk", "nio", "jdk", "nio"}) {
+            System.setProperty("werkstatt.engine", engineName);
+            ServerConfig engineConfig = ServerConfig.load();
+            ExecutorService executor = Executors.newCachedThreadPool();
+            HttpEngine engine = HttpEngine.create(engineConfig,
+                new WerkstattRESTServer.RequestHandler(config, new WorkOrderStore()), executor);
+            engine.start();
+            try {
+                seed(engine.port());
+                run(engine);
+            } finally {
+                engine.stop();
+                executor.shutdownNow();
+            }
+        }
+        System.out.println("(first round of each engine is warm-up)");
+        System.out.println("=".repeat(70));
+    }
+
+    private static void seed(int port) throws IOException {
+        try (Client client = new Client(port)) {
+            for (int i = 0; i < ORDERS; i++) {
+                String body = "{\"licensePlate\":\"SB-BM-" + i + "\",\"description\":\"Benchmark order " + i
+                    + "\",\"status\":\"PENDING\",\"dueDate\":\"2025-12-31\"}";
+                client.send("POST", "/workorders", body);
+            }
+        }
+    }
+
+    private static void run(HttpEngine engine) throws Exception {
+        long[][] latencies = new long[CLIENTS][REQUESTS_PER_CLIENT];
+        Thread[] threads = new Thread[CLIENTS];
+        long start = System.nanoTime();
+        for (int c = 0; c < CLIENTS; c++) {
+            long[] clientLatencies = latencies[c];
+            threads[c] = new Thread(() -> {
+                try (Client client = new Client(engine.port())) {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        long t0 = System.nanoTime();
+                        int status = client.send("GET", "/workorders/" + (1 + random.nextInt(ORDERS)), null);
+                        clientLatencies[i] = System.nanoTime() - t0;
+                        if (status != 200 && status != 404) {
+                            throw new IllegalStateException("unexpected status " + status);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.println(String.format("  %-24s %9.0f req/s   p50 %6.1f us   p99 %7.1f us   max %8.1f us",
+            engine.name(), all.length / (elapsed / 1e9),
+            all[all.length / 2] / 1e3, all[(int) (all.length * 0.99)] / 1e3, all[all.length - 1] / 1e3));
+    }
+
+    /** Minimal blocking keep-alive HTTP/1.1 client, so both engines see identical traffic. */
+    static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        int send(String method, String path, String body) throws IOException {
+            byte[] bodyBytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+            String head = method + " " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                + (body == null ? "" : "Content-Type: application/json\r\nContent-Length: " + bodyBytes.length + "\r\n")
+                + "\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(bodyBytes);
+            out.flush();
+
+            String statusLine = readLine();
+            int status = Integer.parseInt(statusLine.substring(9, 12));
+            int length = 0;
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    length = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            in.readNBytes(length);
+            return status;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw new IOException("connection closed");
+                }
+                if (b != '\r') {
+                    sb.append((char) b);
+                }
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test class for Idempotency-Key on POST /workorders
+ * Retries against an in-process RequestHandler, and concurrency, failure,
+ * size bound and expiry of the IdempotencyCache directly
+ *
+ */
+public class IdempotencyTest {
+
+    private static final String ORDER =
+        "{\"licensePlate\":\"SB-XY-123\",\"description\":\"Bremsscheiben wechseln\",\"status\":\"PENDING\",\"dueDate\":\"2025-10-15\"}";
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(70));
+        System.out.println("IDEMPOTENCY-KEY - TESTS");
+        System.out.println("=".repeat(70));
+
+        int totalTests = 0;
+        int passedTests = 0;
+
+        totalTests++;
+        System.out.println("\n[TEST 1] A retried POST replays the first response");
+        if (testRetryReplays()) {
+            passedTests++;
+            printSuccess("Same status, Location and body, no second order");
+        } else {
+            printFailure("Retry created a second order or answered differently");
+        }
+
+        totalTests++;
+        System.out.println("\n[TEST 2] Key reuse, invalid keys and rejected bodies");
+        if (testKeyRules()) {
+            passedTests++;
+            printSuccess("422 for another body, 400 for a bad key, a 400 is replayed too");
+        } else {
+            printFailure("Wrong status for a reused or invalid key");
+        }
+
+        totalTests++;
+        System.out.println("\n[TEST 3] Concurrent duplicates wait for the request in flight");
+        if (testConcurrentDuplicates()) {
+            passedTests++;
+            printSuccess("Action ran once, every caller got its response, one order created");
+        } else {
+            printFailure("Action ran more than once");
+        }
+
+        totalTests++;
+        System.out.println("\n[TEST 4] A failed action is not cached");
+        if (testFailureNotCached()) {
+            passedTests++;
+            printSuccess("Next request with the key runs the action again");
+        } else {
+            printFailure("Failure was cached");
+        }
+
+        totalTests++;
+        System.out.println("\n[TEST 5] Size bound and expiry");
+        if (testBoundAndExpiry()) {
+            passedTests++;
+            printSuccess("Oldest key dropped beyond maxEntries, keys forgotten after the TTL");
+        } else {
+            printFailure("Cache grew beyond its bound or kept expired keys");
+        }
+
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("TEST SUMMARY");
+        System.out.println("=".repeat(70));
+        System.out.println("Total tests:  " + totalTests);
+        System.out.println("Passed:    " + passedTests);
+        System.out.println("Failed:    " + (totalTests - passedTests));
+        System.out.println("=".repeat(70));
+    }
+
+    private static boolean testRetryReplays() throws Exception {
+        WorkOrderStore store = new WorkOrderStore();
+        HttpServer server = startServer(store);
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getAddress().getPort();
+            HttpResponse<String> first = post(client, base, "tablet-7-order-1", ORDER);
+            HttpResponse<String> retry = post(client, base, "tablet-7-order-1", ORDER);
+            HttpResponse<String> other = post(client, base, "tablet-7-order-2", ORDER);
+            HttpResponse<String> unkeyed = post(client, base, null, ORDER);
+            System.out.println("  First: " + first.statusCode() + " " + first.headers().firstValue("Location").orElse(null)
+                + ", retry: " + retry.statusCode() + " " + retry.headers().firstValue("Location").orElse(null)
+                + " replayed=" + retry.headers().firstValue("Idempotent-Replayed").orElse("false")
+                + ", orders: " + store.size());
+            return first.statusCode() == 201 && retry.statusCode() == 201
+                && first.body().equals(retry.body())
+                && first.headers().firstValue("Location").equals(retry.headers().firstValue("Location"))
+                && first.headers().firstValue("Idempotent-Replayed").isEmpty()
+                && retry.headers().firstValue("Idempotent-Replayed").equals(Optional.of("true"))
+                && other.statusCode() == 201 && !other.body().equals(first.body())
+                && unkeyed.statusCode() == 201
+                && store.size() == 3;
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static boolean testKeyRules() throws Exception {
+        WorkOrderStore store = new WorkOrderStore();
+        HttpServer server = startServer(store);
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getAddress().getPort();
+            post(client, base, "key-a", ORDER);
+            HttpResponse<String> reused = post(client, base, "key-a", ORDER.replace("SB-XY-123", "KL-AA-007"));
+            HttpResponse<String> tooLong = post(client, base, "k".repeat(256), ORDER);
+            HttpResponse<String> rejected = post(client, base, "key-b", "{}");
+            HttpResponse<String> rejectedAgain = post(client, base, "key-b", "{}");
+            System.out.println("  Reused: " + reused.statusCode() + ", too long: " + tooLong.statusCode()
+                + ", invalid body: " + rejected.statusCode() + "/" + rejectedAgain.statusCode()
+                + ", orders: " + store.size());
+            return reused.statusCode() == 422
+                && tooLong.statusCode() == 400
+                && rejected.statusCode() == 400 && rejectedAgain.statusCode() == 400
+                && rejected.body().equals(rejectedAgain.body())
+                && rejectedAgain.headers().firstValue("Idempotent-Replayed").isPresent()
+                && store.size() == 1;
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static boolean testConcurrentDuplicates() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+        byte[] fingerprint = fingerprint(ORDER);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<IdempotencyCache.Response>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.execute("same-key", fingerprint, () -> {
+                        runs.incrementAndGet();
+                        sleep(100);
+                        return response("order 1");
+                    });
+                }));
+            }
+            start.countDown();
+            int replayed = 0;
+            boolean sameBody = true;
+            for (Future<IdempotencyCache.Response> result : results) {
+                IdempotencyCache.Response response = result.get();
+                replayed += response.replayed ? 1 : 0;
+                sameBody &= Arrays.equals(response.body, "order 1".getBytes(StandardCharsets.UTF_8));
+            }
+            System.out.println("  Callers: " + threads + ", action runs: " + runs.get() + ", replayed: " + replayed);
+            return runs.get() == 1 && replayed == threads - 1 && sameBody && testConcurrentPosts(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean testConcurrentPosts(ExecutorService executor) throws Exception {
+        WorkOrderStore store = new WorkOrderStore();
+        HttpServer server = startServer(store);
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getAddress().getPort();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<HttpResponse<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return post(client, base, "tablet-3-order-9", ORDER);
+                }));
+            }
+            start.countDown();
+            String body = null;
+            boolean same = true;
+            for (Future<HttpResponse<String>> result : results) {
+                HttpResponse<String> response = result.get();
+                same &= response.statusCode() == 201 && (body == null || body.equals(response.body()));
+                body = response.body();
+            }
+            System.out.println("  Concurrent POSTs: 8, orders created: " + store.size());
+            return same && store.size() == 1;
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static boolean testFailureNotCached() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+        byte[] fingerprint = fingerprint(ORDER);
+        boolean thrown = false;
+        try {
+            cache.execute("key", fingerprint, () -> {
+                throw new IOException("encoding failed");
+            });
+        } catch (IOException e) {
+            thrown = true;
+        }
+        IdempotencyCache.Response response = cache.execute("key", fingerprint, () -> response("second"));
+        System.out.println("  Thrown: " + thrown + ", then: " + new String(response.body, StandardCharsets.UTF_8)
+            + " replayed=" + response.replayed);
+        return thrown && !response.replayed && cache.size() == 1;
+    }
+
+    private static boolean testBoundAndExpiry() throws Exception {
+        IdempotencyCache bounded = new IdempotencyCache(2, Duration.ofMinutes(1));
+        byte[] fingerprint = fingerprint(ORDER);
+        AtomicInteger runs = new AtomicInteger();
+        IdempotencyCache.Action action = () -> response("run " + runs.incrementAndGet());
+        bounded.execute("k1", fingerprint, action);
+        bounded.execute("k2", fingerprint, action);
+        bounded.execute("k3", fingerprint, action);
+        boolean k3Cached = bounded.execute("k3", fingerprint, action).replayed;
+        boolean k1Dropped = !bounded.execute("k1", fingerprint, action).replayed;
+        System.out.println("  maxEntries 2: size " + bounded.size() + ", k3 cached " + k3Cached
+            + ", k1 dropped " + k1Dropped);
+
+        IdempotencyCache expiring = new IdempotencyCache(100, Duration.ofMillis(50));
+        expiring.execute("k", fingerprint, action);
+        boolean cachedBefore = expiring.execute("k", fingerprint, action).replayed;
+        sleep(100);
+        boolean expired = !expiring.execute("k", fingerprint, action).replayed;
+        // a different body is fine once the key is forgotten
+        sleep(100);
+        boolean reusable = expiring.execute("k", fingerprint("{}"), action) != null;
+        System.out.println("  TTL 50 ms: cached before " + cachedBefore + ", expired after " + expired
+            + ", reusable " + reusable);
+
+        return bounded.size() <= 2 && k3Cached && k1Dropped && cachedBefore && expired && reusable;
+    }
+
+    private static HttpServer startServer(WorkOrderStore store) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/").setHandler(new WerkstattRESTServer.RequestHandler(ServerConfig.load(), store));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    private static HttpResponse<String> post(HttpClient client, String base, String key, String body)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + "/workorders"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (key != null) {
+            request.header(IdempotencyCache.HEADER, key);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static byte[] fingerprint(String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return IdempotencyCache.fingerprint(bytes, bytes.length);
+    }
+
+    private static IdempotencyCache.Response response(String body) {
+        return new IdempotencyCache.Response(201, "/workorders/1", "text/plain",
+            body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void printSuccess(String message) {
+        System.out.println("  Succeeded: " + message);
+    }
+
+    private static void printFailure(String message) {
+        System.out.println("  Failed: " + message);
+    }
+}
@@ -0,0 +1,221 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Concurrency stress test for the user registry of KleinerRESTServer
+ * Many threads allocate, update and free ids at once; an id must never have
+ * two owners at the same time, and a full registry must hand out each id once
+ *
+ */
+public class KleinerRESTServerStressTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS_PER_THREAD = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(70));
+        System.out.println("KLEINER REST SERVER - USER REGISTRY STRESS TEST");
+        System.out.println("=".repeat(70));
+
+        int totalTests = 0;
+        int passedTests = 0;
+
+        // Test 1: racing to fill the registry
+        totalTests++;
+        System.out.println("\n[TEST 1] " + THREADS + " threads race for 200 ids, 128 exist");
+        if (testFill()) {
+            passedTests++;
+            printSuccess("Ids 0..127 handed out exactly once, the rest rejected");
+        } else {
+            printFailure("Duplicate, missing or excess ids");
+        }
+
+        // Test 2: allocate / update / free churn
+        totalTests++;
+        System.out.println("\n[TEST 2] " + THREADS + " threads x" + ROUNDS_PER_THREAD + " allocate, update and free");
+        if (testChurn()) {
+            passedTests++;
+            printSuccess("No id ever had two owners, registry empty at the end");
+        } else {
+            printFailure("An id was allocated twice");
+        }
+
+        // Test 3: the HTTP endpoints on top of the registry
+        totalTests++;
+        System.out.println("\n[TEST 3] POST, GET, PUT, DELETE /users over HTTP");
+        if (testHttp()) {
+            passedTests++;
+            printSuccess("Location points to the allocated id, user readable, updatable and deletable");
+        } else {
+            printFailure("HTTP round trip failed");
+        }
+
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("TEST SUMMARY");
+        System.out.println("=".repeat(70));
+        System.out.println("Total tests:  " + totalTests);
+        System.out.println("Passed:    " + passedTests);
+        System.out.println("Failed:    " + (totalTests - passedTests));
+        System.out.println("=".repeat(70));
+    }
+
+    private static boolean testFill() throws InterruptedException {
+        KleinerRESTServer.UserRegistry registry = new KleinerRESTServer.UserRegistry();
+        ConcurrentLinkedQueue<Integer> ids = new ConcurrentLinkedQueue<>();
+        AtomicInteger attempts = new AtomicInteger(200);
+        runConcurrently(() -> {
+            while (attempts.getAndDecrement() > 0) {
+                ids.add(registry.add(new KleinerRESTServer.User("user@werkstatt.de", "r")));
+            }
+        });
+
+        Set<Integer> allocated = new TreeSet<>();
+        int rejected = 0;
+        boolean unique = true;
+        for (int id : ids) {
+            if (id < 0) {
+                rejected++;
+            } else {
+                unique &= allocated.add(id);
+            }
+        }
+        System.out.println("  Allocated: " + allocated.size() + ", rejected: " + rejected);
+        return unique && allocated.size() == 128 && rejected == 72
+            && allocated.iterator().next() == 0 && ((TreeSet<Integer>) allocated).last() == 127
+            && registry.size() == 128;
+    }
+
+    private static boolean testChurn() throws InterruptedException {
+        KleinerRESTServer.UserRegistry registry = new KleinerRESTServer.UserRegistry();
+        AtomicIntegerArray owners = new AtomicIntegerArray(KleinerRESTServer.UserRegistry.CAPACITY);
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger allocations = new AtomicInteger();
+        AtomicInteger full = new AtomicInteger();
+        runConcurrently(() -> {
+            List<Integer> held = new ArrayList<>();
+            for (int i = 0; i < ROUNDS_PER_THREAD; i++) {
+                // hold up to 10 ids, so 16 threads regularly exhaust the 128
+                if (held.size() < 10 && (held.isEmpty() || i % 3 != 0)) {
+                    KleinerRESTServer.User user = new KleinerRESTServer.User("u" + i + "@werkstatt.de", "rm");
+                    int id = registry.add(user);
+                    if (id < 0) {
+                        full.incrementAndGet();
+                        continue;
+                    }
+                    allocations.incrementAndGet();
+                    if (owners.incrementAndGet(id) != 1 || registry.get(id) != user) {
+                        violations.incrementAndGet();
+                    }
+                    held.add(id);
+                } else {
+                    int id = held.remove(held.size() - 1);
+                    KleinerRESTServer.User updated = new KleinerRESTServer.User("neu@werkstatt.de", "rcmd");
+                    if (!registry.replace(id, updated) || registry.get(id) != updated) {
+                        violations.incrementAndGet();
+                    }
+                    owners.decrementAndGet(id);
+                    if (!registry.remove(id)) {
+                        violations.incrementAndGet();
+                    }
+                }
+            }
+            for (int id : held) {
+                owners.decrementAndGet(id);
+                registry.remove(id);
+            }
+        });
+        System.out.println("  Allocations: " + allocations.get() + ", registry full: " + full.get()
+            + ", violations: " + violations.get());
+        return violations.get() == 0 && registry.size() == 0 && allocations.get() > 0;
+    }
+
+    private static boolean testHttp() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/").setHandler(new KleinerRESTServer.Handler(new KleinerRESTServer.UserRegistry()));
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getAddress().getPort();
+            String user = "{\"email\":\"dfhi@htwsaar.de\",\"authorization\":\"rm\"}";
+
+            HttpResponse<String> first = client.send(HttpRequest.newBuilder(URI.create(base + "/users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(user)).build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> second = client.send(HttpRequest.newBuilder(URI.create(base + "/users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"isfates@ul.de\",\"authorization\":\"rcmd\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> invalid = client.send(HttpRequest.newBuilder(URI.create(base + "/users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"kein-at\",\"authorization\":\"x\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> put = client.send(HttpRequest.newBuilder(URI.create(base + "/users/1"))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"email\":\"isfates@ul.de\",\"authorization\":\"r\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> delete = client.send(HttpRequest.newBuilder(URI.create(base + "/users/0"))
+                .DELETE().build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> gone = client.send(HttpRequest.newBuilder(URI.create(base + "/users/0"))
+                .GET().build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> list = client.send(HttpRequest.newBuilder(URI.create(base + "/users"))
+                .GET().build(), HttpResponse.BodyHandlers.ofString());
+            System.out.println("  Location: " + first.headers().firstValue("Location").orElse("-")
+                + ", " + second.headers().firstValue("Location").orElse("-"));
+            System.out.println("  List: " + list.body());
+
+            return first.statusCode() == 201 && first.headers().firstValue("Location").orElse("").endsWith("/users/0")
+                && first.body().equals(user)
+                && second.statusCode() == 201 && second.headers().firstValue("Location").orElse("").endsWith("/users/1")
+                && invalid.statusCode() == 400
+                && put.statusCode() == 204
+                && delete.statusCode() == 204
+                && gone.statusCode() == 404
+                && list.body().equals("[{\"id\":1,\"user\":{\"email\":\"isfates@ul.de\",\"authorization\":\"r\"}}]");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    // starts all threads at once and waits for them
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void printSuccess(String message) {
+        System.out.println("  Succeeded: " + message);
+    }
+
+    private static void printFailure(String message) {
+        System.out.println("  Failed: " + message);
+    }
+}
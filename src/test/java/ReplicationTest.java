@@ -0,0 +1,143 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Test class for leader/follower replication
+ * Runs one leader and two followers in this JVM, talking over localhost sockets
+ *
+ */
+public class ReplicationTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(70));
+        System.out.println("WERKSTATT REPLICATION - TESTS");
+        System.out.println("=".repeat(70));
+
+        int totalTests = 0;
+        int passedTests = 0;
+
+        WorkOrderStore leaderStore = new WorkOrderStore();
+        leaderStore.create("SB-XY-123", "Bremsscheiben wechseln", WorkOrder.Status.PENDING, day("2025-10-15"));
+        leaderStore.create("KL-AA-007", "Ölwechsel", WorkOrder.Status.IN_PROGRESS, day("2025-09-01"));
+
+        ReplicationLeader leader = new ReplicationLeader(leaderStore, 0);
+        leader.start();
+
+        WorkOrderStore firstStore = new WorkOrderStore();
+        ReplicationFollower first = new ReplicationFollower(firstStore, "localhost", leader.port());
+        first.start();
+
+        try {
+            // Test 1: snapshot bootstrap
+            totalTests++;
+            System.out.println("\n[TEST 1] Follower bootstraps from snapshot");
+            if (awaitInSync(leaderStore, firstStore)) {
+                passedTests++;
+                printSuccess("Follower has " + firstStore.size() + " orders at sequence " + firstStore.sequence());
+            } else {
+                printFailure("Follower did not catch up");
+            }
+
+            // Test 2: create, update and delete are streamed in order
+            totalTests++;
+            System.out.println("\n[TEST 2] Mutations are streamed in order");
+            WorkOrder created = leaderStore.create("SB-BB-999", "TÜV Hauptuntersuchung",
+                WorkOrder.Status.PENDING, day("2025-12-20"));
+            leaderStore.update(created.id, null, "TÜV + AU", WorkOrder.Status.IN_PROGRESS, null);
+            leaderStore.delete(2);
+            for (int i = 0; i < 1000; i++) {
+                leaderStore.create("SB-LD-" + i, "Load " + i, WorkOrder.Status.PENDING, day("2026-01-01"));
+            }
+            if (awaitInSync(leaderStore, firstStore) && firstStore.get(2) == null
+                    && firstStore.get(created.id).description.equals("TÜV + AU")) {
+                passedTests++;
+                printSuccess("Follower at sequence " + firstStore.sequence() + ", identical content");
+            } else {
+                printFailure("Follower content differs from leader");
+            }
+
+            // Test 3: a follower joining late gets the current state
+            totalTests++;
+            System.out.println("\n[TEST 3] Late follower bootstraps from current snapshot");
+            WorkOrderStore secondStore = new WorkOrderStore();
+            ReplicationFollower second = new ReplicationFollower(secondStore, "localhost", leader.port());
+            second.start();
+            try {
+                if (awaitInSync(leaderStore, secondStore)) {
+                    passedTests++;
+                    printSuccess("Second follower has " + secondStore.size() + " orders");
+                } else {
+                    printFailure("Second follower did not catch up");
+                }
+
+                // Test 4: lag metric
+                totalTests++;
+                System.out.println("\n[TEST 4] Lag metric drops to 0 and status is reported");
+                Thread.sleep(1500); // at least one heartbeat
+                System.out.println("  Leader:   " + leader.statusJson());
+                System.out.println("  Follower: " + second.statusJson());
+                if (second.lag() == 0 && second.isConnected() && leader.followerCount() == 2) {
+                    passedTests++;
+                    printSuccess("Lag 0, 2 followers connected");
+                } else {
+                    printFailure("Unexpected lag " + second.lag() + " / followers " + leader.followerCount());
+                }
+            } finally {
+                second.stop();
+            }
+
+            // Test 5: ids keep increasing on a follower after the leader's orders
+            totalTests++;
+            System.out.println("\n[TEST 5] Follower id generator follows the replicated ids");
+            WorkOrder local = firstStore.create("SB-NEW-1", "Nach Übernahme", WorkOrder.Status.PENDING, day("2026-02-01"));
+            if (local.id > created.id + 1000) {
+                passedTests++;
+                printSuccess("Next id on follower: " + local.id);
+            } else {
+                printFailure("Follower reused id " + local.id);
+            }
+        } finally {
+            first.stop();
+            leader.stop();
+        }
+
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("Total tests:  " + totalTests);
+        System.out.println("Passed:    " + passedTests);
+        System.out.println("Failed:    " + (totalTests - passedTests));
+        System.out.println("=".repeat(70));
+    }
+
+    private static boolean awaitInSync(WorkOrderStore leader, WorkOrderStore follower) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (follower.sequence() == leader.sequence() && contents(follower).equals(contents(leader))) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    private static Map<Long, String> contents(WorkOrderStore store) {
+        Map<Long, String> contents = new TreeMap<>();
+        for (WorkOrder order : store.values()) {
+            contents.put(order.id, order.toJson());
+        }
+        return contents;
+    }
+
+    private static int day(String date) {
+        return WorkOrder.parseDueDate(date);
+    }
+
+    private static void printSuccess(String message) {
+        System.out.println("  Succeeded: " + message);
+    }
+
+    private static void printFailure(String message) {
+        System.out.println("  Failed: " + message);
+    }
+}
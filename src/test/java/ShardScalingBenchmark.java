@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput of a sharded cluster with 1, 2 and 4 nodes behind one router
+ * Every node and the router run as separate JVMs on this machine, started from the
+ * test classpath; clients talk to the router only (80% GET /workorders/{id}, 20% POST)
+ * Each cluster is checked for correct routing before it is measured
+ *
+ * Usage: java -cp target/classes:target/test-classes ShardScalingBenchmark [seconds] [clients]
+ */
+public class ShardScalingBenchmark {
+
+    private static final int BLOCK_SIZE = 100;
+    private static final int SEED_ORDERS = 400;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        System.out.println("=".repeat(70));
+        System.out.println("SHARD SCALING - " + clients + " clients x " + seconds + "s through the router, "
+            + Runtime.getRuntime().availableProcessors() + " CPUs");
+        System.out.println("=".repeat(70));
+
+        double baseline = 0;
+        for (int nodes : new int[] {1, 2, 4}) {
+            try (Cluster cluster = Cluster.start(nodes)) {
+                List<Long> ids = seedAndVerify(cluster);
+                double throughput = run(cluster.routerPort, ids, seconds, clients);
+                if (baseline == 0) {
+                    baseline = throughput;
+                }
+                System.out.println(String.format("  %d node(s)   %9.0f req/s   x%.2f", nodes, throughput, throughput / baseline));
+            }
+        }
+        System.out.println("(the router and the clients share this machine with the nodes; on one host the");
+        System.out.println(" gain is bounded by the CPUs, spread the nodes over machines for real numbers)");
+        System.out.println("=".repeat(70));
+    }
+
+    /** Creates orders through the router and checks ids, routing and the merged collection. */
+    private static List<Long> seedAndVerify(Cluster cluster) throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        ShardLayout layout = new ShardLayout(cluster.nodes, BLOCK_SIZE);
+        // a single node starts with the demo orders
+        List<Long> existing = new ArrayList<>();
+        for (WorkOrder order : list(http, cluster.router("/workorders"))) {
+            existing.add(order.id);
+        }
+        int existingPending = list(http, cluster.router("/workorders?status=PENDING")).size();
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < SEED_ORDERS; i++) {
+            String body = "{\"licensePlate\":\"SB-SH-" + i + "\",\"description\":\"Shard order " + i
+                + "\",\"status\":\"" + (i % 2 == 0 ? "PENDING" : "COMPLETED") + "\",\"dueDate\":\"2025-12-31\"}";
+            HttpResponse<String> created = http.send(HttpRequest.newBuilder(cluster.router("/workorders"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+            check(created.statusCode() == 201, "POST returned " + created.statusCode());
+            long id = Long.parseLong(created.headers().firstValue("Location").orElseThrow().substring(12));
+            int shard = Integer.parseInt(created.headers().firstValue("X-Shard").orElseThrow());
+            check(layout.ownerOf(id) == shard, "id " + id + " created on shard " + shard);
+            ids.add(id);
+        }
+
+        for (long id : ids.subList(0, 20)) {
+            HttpResponse<String> got = http.send(HttpRequest.newBuilder(cluster.router("/workorders/" + id)).build(),
+                HttpResponse.BodyHandlers.ofString());
+            check(got.statusCode() == 200 && got.body().startsWith("{\"id\":" + id + ","), "GET /workorders/" + id);
+        }
+
+        List<WorkOrder> pending = list(http, cluster.router("/workorders?status=PENDING"));
+        check(pending.size() == existingPending + SEED_ORDERS / 2, "filtered scatter-gather returned " + pending.size());
+
+        List<WorkOrder> first = list(http, cluster.router("/workorders?limit=5"));
+        existing.addAll(ids);
+        List<Long> lowest = existing.stream().sorted().limit(5).collect(Collectors.toList());
+        check(first.size() == 5 && first.get(0).id == lowest.get(0) && first.get(4).id == lowest.get(4),
+            "limit pushed down and merged");
+
+        System.out.println("  " + cluster.nodes + " node(s)   routing ok (" + SEED_ORDERS + " orders, ids "
+            + ids.stream().mapToLong(Long::longValue).min().getAsLong() + ".."
+            + ids.stream().mapToLong(Long::longValue).max().getAsLong() + ")");
+        return ids;
+    }
+
+    private static List<WorkOrder> list(HttpClient http, URI uri) throws Exception {
+        HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(uri)
+            .header("Accept", WorkOrderCodec.MEDIA_TYPE).build(), HttpResponse.BodyHandlers.ofByteArray());
+        check(response.statusCode() == 200, "GET " + uri + " returned " + response.statusCode());
+        List<WorkOrder> orders = new ArrayList<>();
+        WorkOrderCodec.Reader reader = new WorkOrderCodec.Reader(response.body());
+        for (WorkOrder order = reader.nextListItem(); order != null; order = reader.nextListItem()) {
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static double run(int port, List<Long> ids, int seconds, int clients) throws Exception {
+        AtomicLong completed = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            threads[c] = new Thread(() -> {
+                try (HttpEngineBenchmark.Client client = new HttpEngineBenchmark.Client(port)) {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        int status;
+                        if (random.nextInt(5) == 0) {
+                            status = client.send("POST", "/workorders", "{\"licensePlate\":\"SB-LD-1\","
+                                + "\"description\":\"Load\",\"status\":\"PENDING\",\"dueDate\":\"2026-01-01\"}");
+                        } else {
+                            status = client.send("GET", "/workorders/" + ids.get(random.nextInt(ids.size())), null);
+                        }
+                        if (status != 200 && status != 201) {
+                            throw new IllegalStateException("unexpected status " + status);
+                        }
+                        completed.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return completed.get() / (double) seconds;
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new IllegalStateException("Sharding check failed: " + what);
+        }
+    }
+
+    /** Node and router processes on free local ports. */
+    private static final class Cluster implements AutoCloseable {
+        final int nodes;
+        final int routerPort;
+        final List<Process> processes = new ArrayList<>();
+
+        private Cluster(int nodes, int routerPort) {
+            this.nodes = nodes;
+            this.routerPort = routerPort;
+        }
+
+        static Cluster start(int nodes) throws Exception {
+            Cluster cluster = new Cluster(nodes, freePort());
+            try {
+                StringBuilder shards = new StringBuilder();
+                for (int i = 0; i < nodes; i++) {
+                    int port = freePort();
+                    shards.append(i == 0 ? "" : ",").append("localhost:").append(port);
+                    cluster.launch(port, "-Dwerkstatt.shard.index=" + i, "-Dwerkstatt.shard.count=" + nodes);
+                }
+                cluster.launch(cluster.routerPort, "-Dwerkstatt.router.shards=" + shards);
+            } catch (Exception e) {
+                cluster.close();
+                throw e;
+            }
+            return cluster;
+        }
+
+        URI router(String path) {
+            return URI.create("http://localhost:" + routerPort + path);
+        }
+
+        private void launch(int port, String... properties) throws Exception {
+            List<String> command = new ArrayList<>(List.of(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-cp", System.getProperty("java.class.path"),
+                "-Dwerkstatt.port=" + port,
+                "-Dwerkstatt.shard.blockSize=" + BLOCK_SIZE,
+                "-Dwerkstatt.filter.logging=false",
+                "-Dwerkstatt.rateLimit.enabled=false",
+                "-Dwerkstatt.maxConcurrentRequests=1024"));
+            command.addAll(List.of(properties));
+            command.add("WerkstattRESTServer");
+            processes.add(new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start());
+            awaitReady(port);
+        }
+
+        private static void awaitReady(int port) throws Exception {
+            HttpClient http = HttpClient.newHttpClient();
+            long deadline = System.currentTimeMillis() + 20_000;
+            while (System.currentTimeMillis() < deadline) {
+                try {
+                    HttpResponse<Void> ready = http.send(HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/health/ready")).build(),
+                        HttpResponse.BodyHandlers.discarding());
+                    if (ready.statusCode() == 200) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(100);
+            }
+            throw new IllegalStateException("server on port " + port + " did not become ready");
+        }
+
+        private static int freePort() throws IOException {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                return socket.getLocalPort();
+            }
+        }
+
+        @Override
+        public void close() {
+            for (Process process : processes) {
+                process.destroy(); // SIGTERM, drains like in production
+            }
+            for (Process process : processes) {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    process.destroyForcibly();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import com.sun.net.httpserver.HttpServer;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test class for the Flight Recorder events
+ * Records requests against an in-process RequestHandler, once with the JDK's
+ * default profile and once with the bundled werkstatt.jfc, and reads the
+ * events back from the recording file
+ *
+ */
+public class WerkstattEventsTest {
+
+    private static final Path PROFILE = Path.of("src/main/resources/werkstatt.jfc");
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(70));
+        System.out.println("WERKSTATT FLIGHT RECORDER EVENTS - TESTS");
+        System.out.println("=".repeat(70));
+
+        int totalTests = 0;
+        int passedTests = 0;
+
+        // Test 1: off unless asked for
+        totalTests++;
+        System.out.println("\n[TEST 1] No werkstatt events with the default profile");
+        if (testDisabledByDefault()) {
+            passedTests++;
+            printSuccess("Default recording contains no werkstatt.* events");
+        } else {
+            printFailure("werkstatt events recorded without being enabled");
+        }
+
+        // Test 2: the bundled profile
+        totalTests++;
+        System.out.println("\n[TEST 2] werkstatt.jfc records requests, store access, validation and serialization");
+        List<RecordedEvent> events = recordWith(Configuration.create(PROFILE));
+        if (testRequestEvents(events)) {
+            passedTests++;
+            printSuccess("One Request per call with route, status and byte counts");
+        } else {
+            printFailure("Request events missing or wrong");
+        }
+
+        totalTests++;
+        System.out.println("\n[TEST 3] Store, validation and serialization events");
+        if (testDetailEvents(events)) {
+            passedTests++;
+            printSuccess("Writes with lock wait, reads with strategy, failures with message, encodings with size");
+        } else {
+            printFailure("Detail events missing or wrong");
+        }
+
+        totalTests++;
+        System.out.println("\n[TEST 4] Recording started while a request is in flight");
+        if (testRecordingStartedMidRequest()) {
+            passedTests++;
+            printSuccess("Events begun while disabled are dropped, the request completes");
+        } else {
+            printFailure("finish() failed or committed an event that never began");
+        }
+
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("TEST SUMMARY");
+        System.out.println("=".repeat(70));
+        System.out.println("Total tests:  " + totalTests);
+        System.out.println("Passed:    " + passedTests);
+        System.out.println("Failed:    " + (totalTests - passedTests));
+        System.out.println("=".repeat(70));
+    }
+
+    private static boolean testDisabledByDefault() throws Exception {
+        List<RecordedEvent> events = recordWith(Configuration.getConfiguration("default"));
+        long werkstatt = events.stream().filter(e -> e.getEventType().getName().startsWith("werkstatt.")).count();
+        System.out.println("  Events recorded: " + events.size() + ", werkstatt.*: " + werkstatt);
+        return werkstatt == 0 && !events.isEmpty();
+    }
+
+    private static boolean testRequestEvents(List<RecordedEvent> events) {
+        List<RecordedEvent> requests = named(events, "werkstatt.Request");
+        List<String> lines = requests.stream()
+            .map(e -> e.getString("method") + " " + e.getString("route") + " " + e.getInt("status"))
+            .collect(Collectors.toList());
+        System.out.println("  Requests: " + lines);
+        RecordedEvent post = requests.get(0);
+        RecordedEvent list = requests.get(2);
+        return lines.equals(List.of(
+                "POST /workorders 201", "POST /workorders 400", "GET /workorders 200",
+                "GET /workorders/{id} 200", "PUT /workorders/{id} 200", "GET /workorders 200",
+                "DELETE /workorders/{id} 204", "GET /workorders/{id} 404"))
+            && post.getLong("requestBytes") == ORDER.length() && post.getLong("responseBytes") > 0
+            && list.getLong("requestBytes") == 0 && list.getLong("responseBytes") > 0
+            && requests.get(6).getLong("responseBytes") == 0
+            && requests.stream().allMatch(e -> !e.getDuration().isNegative());
+    }
+
+    private static boolean testDetailEvents(List<RecordedEvent> events) {
+        List<String> writes = named(events, "werkstatt.StoreWrite").stream()
+            .map(e -> e.getString("operation") + " " + e.getLong("id") + " " + e.getBoolean("applied"))
+            .collect(Collectors.toList());
+        List<String> reads = named(events, "werkstatt.StoreRead").stream()
+            .map(e -> e.getString("operation") + " " + e.getString("strategy") + " " + e.getLong("matched"))
+            .collect(Collectors.toList());
+        List<String> failures = named(events, "werkstatt.ValidationFailure").stream()
+            .map(e -> e.getString("route") + " " + e.getString("message"))
+            .collect(Collectors.toList());
+        List<String> encodings = named(events, "werkstatt.Serialization").stream()
+            .map(e -> e.getString("format") + " " + e.getInt("orders") + " " + (e.getLong("bytes") > 0))
+            .collect(Collectors.toList());
+        System.out.println("  Writes: " + writes);
+        System.out.println("  Reads: " + reads);
+        System.out.println("  Failures: " + failures);
+        System.out.println("  Serialization: " + encodings);
+
+        boolean lockWaitRecorded = named(events, "werkstatt.StoreWrite").stream()
+            .allMatch(e -> e.getDuration("lockWait").compareTo(e.getDuration()) <= 0);
+        return writes.equals(List.of("create 1 true", "update 1 true", "delete 1 true"))
+            && reads.equals(List.of("query scan 1", "get null 1", "get null 1", "query scan 1", "get null 0"))
+            && failures.equals(List.of("/workorders Missing required field"))
+            && encodings.equals(List.of("json 1 true", "json 1 true", "json 1 true", "json 1 true", "binary 1 true"))
+            && lockWaitRecorded;
+    }
+
+    // starts every event while no recording runs and finishes them once one does
+    private static boolean testRecordingStartedMidRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch recordingStarted = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/").setHandler(exchange -> {
+            try {
+                WerkstattEvents.Request request = WerkstattEvents.Request.start(exchange);
+                WerkstattEvents.StoreRead read = WerkstattEvents.StoreRead.start("get");
+                WerkstattEvents.StoreWrite write = WerkstattEvents.StoreWrite.start("create");
+                WerkstattEvents.Serialization serialization = WerkstattEvents.Serialization.start("binary", 1);
+                started.countDown();
+                recordingStarted.await();
+                write.locked();
+                read.finish(null, 1, 1);
+                write.finish(1, true);
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream os = serialization.count(exchange.getResponseBody())) {
+                    os.write(1);
+                }
+                serialization.finish();
+                serialization.finish(1);
+                request.finish(exchange, 0);
+            } catch (Throwable e) {
+                failure.set(e);
+                throw new IOException(e);
+            }
+        });
+        server.start();
+        Path file = Files.createTempFile("werkstatt", ".jfr");
+        try (Recording recording = new Recording(Configuration.create(PROFILE))) {
+            HttpClient client = HttpClient.newHttpClient();
+            CompletableFuture<HttpResponse<byte[]>> response = client.sendAsync(HttpRequest.newBuilder(
+                URI.create("http://localhost:" + server.getAddress().getPort() + "/workorders")).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            started.await();
+            recording.start();
+            recordingStarted.countDown();
+            int status = response.get().statusCode();
+            recording.stop();
+            recording.dump(file);
+            long werkstatt = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().startsWith("werkstatt.")).count();
+            System.out.println("  Status: " + status + ", werkstatt.* events: " + werkstatt
+                + ", failure: " + failure.get());
+            return status == 200 && werkstatt == 0 && failure.get() == null;
+        } finally {
+            server.stop(0);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static final String ORDER =
+        "{\"licensePlate\":\"SB-XY-123\",\"description\":\"Bremsscheiben wechseln\",\"status\":\"PENDING\",\"dueDate\":\"2025-10-15\"}";
+
+    // runs the same requests against an empty store under a recording with the given settings
+    private static List<RecordedEvent> recordWith(Configuration configuration) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/").setHandler(new WerkstattRESTServer.RequestHandler(ServerConfig.load(), new WorkOrderStore()));
+        server.start();
+        Path file = Files.createTempFile("werkstatt", ".jfr");
+        try (Recording recording = new Recording(configuration)) {
+            recording.start();
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getAddress().getPort();
+            send(client, HttpRequest.newBuilder(URI.create(base + "/workorders"))
+                .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(ORDER)));
+            send(client, HttpRequest.newBuilder(URI.create(base + "/workorders"))
+                .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString("{}")));
+            send(client, HttpRequest.newBuilder(URI.create(base + "/workorders")).GET());
+            send(client, HttpRequest.newBuilder(URI.create(base + "/workorders/1")).GET());
+            send(client, HttpRequest.newBuilder(URI.create(base + "/workorders/1"))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"status\":\"COMPLETED\"}")));
+            send(client, HttpRequest.newBuilder(URI.create(base + "/workorders?status=COMPLETED"))
+                .header("Accept", WorkOrderCodec.MEDIA_TYPE).GET());
+            send(client, HttpRequest.newBuilder(URI.create(base + "/workorders/1")).DELETE());
+            send(client, HttpRequest.newBuilder(URI.create(base + "/workorders/1")).GET());
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<>(RecordingFile.readAllEvents(file));
+            events.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+            return events;
+        } finally {
+            server.stop(0);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void send(HttpClient client, HttpRequest.Builder request) throws Exception {
+        client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    private static void printSuccess(String message) {
+        System.out.println("  Succeeded: " + message);
+    }
+
+    private static void printFailure(String message) {
+        System.out.println("  Failed: " + message);
+    }
+}
@@ -1,8 +1,12 @@
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 
 /**
@@ -141,6 +145,61 @@ public class WerkstattRESTServerTest {
                 printFailure("Due date filtering failed");
             }
 
+            // Test 11: POST /workorders - Oversized body rejected before buffering
+            totalTests++;
+            System.out.println("\n[TEST 11] POST /workorders - Oversized body (413 Payload Too Large)");
+            if (testPayloadTooLarge()) {
+                passedTests++;
+                printSuccess("Oversized body rejected with 413");
+            } else {
+                failedTests++;
+                printFailure("Oversized body was not rejected");
+            }
+
+            // Test 12: Binary encoding negotiated with Content-Type and Accept
+            totalTests++;
+            System.out.println("\n[TEST 12] POST + GET /workorders - Binary encoding (" + WorkOrderCodec.MEDIA_TYPE + ")");
+            if (testBinaryEncoding()) {
+                passedTests++;
+                printSuccess("Binary order created and read back, JSON still the default, malformed body and date rejected");
+            } else {
+                failedTests++;
+                printFailure("Binary encoding failed");
+            }
+
+            // Test 13: Sparse fieldsets
+            totalTests++;
+            System.out.println("\n[TEST 13] GET /workorders?fields=id,licensePlate,status - Sparse fieldsets");
+            if (testSparseFieldsets()) {
+                passedTests++;
+                printSuccess("Only the requested fields returned, unknown field rejected");
+            } else {
+                failedTests++;
+                printFailure("Sparse fieldsets failed");
+            }
+
+            // Test 14: IN lists, negation and the query plan
+            totalTests++;
+            System.out.println("\n[TEST 14] GET /workorders?status=PENDING,IN_PROGRESS&licensePlate=!SB-BB-999 - Query filters");
+            if (testQueryFilters()) {
+                passedTests++;
+                printSuccess("IN list and negation applied, explain=true returns the plan");
+            } else {
+                failedTests++;
+                printFailure("Query filters failed");
+            }
+
+            // Test 15: POST /workorders flood - Rate limit (must run last, it drains the bucket)
+            totalTests++;
+            System.out.println("\n[TEST 15] POST /workorders x50 - Rate limiting (429 Too Many Requests)");
+            if (testRateLimit()) {
+                passedTests++;
+                printSuccess("Flood throttled with 429 and Retry-After");
+            } else {
+                failedTests++;
+                printFailure("Flood was not throttled");
+            }
+
         } catch (Exception e) {
             System.err.println("\nCRITICAL ERROR: " + e.getMessage());
             e.printStackTrace();
@@ -390,6 +449,180 @@ public class WerkstattRESTServerTest {
         }
     }
 
+    private static boolean testPayloadTooLarge() {
+        // Raw socket: only announce a huge body, the server must answer before we send it
+        try (Socket socket = new Socket("localhost", 8080)) {
+            socket.setSoTimeout(5000);
+            String head = "POST /workorders HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: 100000000\r\n\r\n";
+            socket.getOutputStream().write(head.getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String statusLine = in.readLine();
+            System.out.println("  Status line: " + statusLine);
+
+            return statusLine != null && statusLine.startsWith("HTTP/1.1 413");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean testBinaryEncoding() {
+        try {
+            byte[] body = new WorkOrderCodec.Writer()
+                    .fields("BIN-42", "Binär angelegt", WorkOrder.Status.IN_PROGRESS, WorkOrder.parseDueDate("2026-03-01"))
+                    .toByteArray();
+            HttpRequest create = HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders"))
+                    .header("Content-Type", WorkOrderCodec.MEDIA_TYPE)
+                    .header("Accept", WorkOrderCodec.MEDIA_TYPE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            HttpResponse<byte[]> created = client.send(create, HttpResponse.BodyHandlers.ofByteArray());
+            System.out.println("  Status: " + created.statusCode() + ", " + created.body().length + " bytes");
+            if (created.statusCode() != 201) {
+                return false;
+            }
+            WorkOrder order = new WorkOrderCodec.Reader(created.body()).order();
+
+            HttpRequest list = HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders?status=IN_PROGRESS"))
+                    .header("Accept", WorkOrderCodec.MEDIA_TYPE)
+                    .GET()
+                    .build();
+            HttpResponse<byte[]> listed = client.send(list, HttpResponse.BodyHandlers.ofByteArray());
+            boolean found = false;
+            WorkOrderCodec.Reader reader = new WorkOrderCodec.Reader(listed.body());
+            for (WorkOrder item = reader.nextListItem(); item != null; item = reader.nextListItem()) {
+                found |= item.id == order.id;
+            }
+
+            // without Accept the same order comes back as JSON
+            HttpResponse<String> json = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders/" + order.id)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            printResponse(json);
+
+            // a string length that overflows 64 bits, and one that decodes to a negative long
+            int overflow = postBinary(new byte[] {1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1});
+            int negative = postBinary(new byte[] {1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1});
+            System.out.println("  Malformed lengths: " + overflow + ", " + negative);
+
+            // licensePlate, description and a dueDate of 2^32 encoded, beyond any int epoch day
+            int farDueDate = postBinary(new byte[] {11, 6, 'B', 'I', 'N', '-', '4', '3', 1, 'x',
+                    (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10});
+            System.out.println("  Out of range dueDate: " + farDueDate);
+
+            return found
+                    && overflow == 400 && negative == 400 && farDueDate == 400
+                    && order.licensePlate.equals("BIN-42")
+                    && json.body().contains("\"description\":\"Binär angelegt\"")
+                    && json.body().contains("\"dueDate\":\"2026-03-01\"");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static int postBinary(byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/workorders"))
+                .header("Content-Type", WorkOrderCodec.MEDIA_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static boolean testSparseFieldsets() {
+        try {
+            HttpResponse<String> list = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders?status=PENDING&fields=status,id,licensePlate"))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            printResponse(list);
+
+            HttpResponse<String> item = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders/1?fields=dueDate"))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            printResponse(item);
+
+            HttpResponse<String> unknown = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders?fields=id,owner"))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            printResponse(unknown);
+
+            return list.statusCode() == 200
+                    && list.body().startsWith("[{\"id\":")
+                    && list.body().contains("\"licensePlate\":\"SB-BB-999\",\"status\":\"PENDING\"}")
+                    && !list.body().contains("description")
+                    && item.statusCode() == 200
+                    && item.body().equals("{\"dueDate\":\"2025-10-15\"}")
+                    && unknown.statusCode() == 400;
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean testQueryFilters() {
+        try {
+            HttpResponse<String> list = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders?status=pending,IN_PROGRESS&licensePlate=!SB-BB-999"))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            printResponse(list);
+
+            HttpResponse<String> plan = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders?licensePlate=sb-xy-123&status=!COMPLETED&explain=true"))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            printResponse(plan);
+
+            return list.statusCode() == 200
+                    && list.body().contains("\"licensePlate\":\"SB-XY-123\"")
+                    && !list.body().contains("SB-BB-999")
+                    && !list.body().contains("COMPLETED")
+                    && plan.statusCode() == 200
+                    && plan.body().contains("\"status NOT IN [COMPLETED]\",\"licensePlate IN [SB-XY-123]\"")
+                    && plan.body().contains("\"strategy\":")
+                    && plan.body().contains("\"matched\":");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean testRateLimit() {
+        try {
+            // Invalid body: throttled or not, no order gets created
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(BASE_URL + "/workorders"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                    .build();
+
+            // More than the default burst of 20 for POST /workorders
+            for (int i = 0; i < 50; i++) {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 429) {
+                    printResponse(response);
+                    return response.headers().firstValue("Retry-After").isPresent();
+                }
+            }
+            return false;
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+
     // Utility methods
 
     private static void printResponse(HttpResponse<String> response) {
@@ -0,0 +1,170 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Payload size and encode/decode cost of the binary encoding against JSON
+ * JSON is produced and parsed the way the server does it (WorkOrder.toJson and
+ * RequestHandler.extractJsonValue), for single order bodies and a 1000 order list
+ */
+public class WorkOrderCodecBenchmark {
+
+    private static final int LIST_SIZE = 1_000;
+    private static final int ROUNDS = 2_000;
+    private static final int SINGLE_ROUNDS = 1_000_000;
+
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=".repeat(70));
+        System.out.println("BINARY vs JSON - single order x" + SINGLE_ROUNDS + ", list of " + LIST_SIZE
+            + " orders x" + ROUNDS);
+        System.out.println("=".repeat(70));
+
+        String[] plates = {"SB-XY-123", "KL-AA-007", "SB-BB-999", "HOM-Z-42"};
+        String[] descriptions = {"Bremsscheiben wechseln", "Ölwechsel", "TÜV Hauptuntersuchung", "Klimaanlage prüfen"};
+        List<WorkOrder> orders = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            orders.add(new WorkOrder(100_000 + i, plates[i % 4], descriptions[i % 4],
+                WorkOrder.Status.values()[i % 3], WorkOrder.parseDueDate("2025-10-15") + i % 90));
+        }
+        WorkOrder single = orders.get(1);
+
+        String json = single.toJson();
+        byte[] binary = new WorkOrderCodec.Writer().order(single).toByteArray();
+        String jsonList = encodeJsonList(orders);
+        byte[] binaryList = encodeBinaryList(orders);
+        int jsonListBytes = jsonList.getBytes(StandardCharsets.UTF_8).length;
+
+        System.out.println("\nPayload size:");
+        System.out.println(String.format("  %-22s %8d bytes JSON   %8d bytes binary   %3.0f%%", "single order",
+            json.getBytes(StandardCharsets.UTF_8).length, binary.length,
+            100.0 * binary.length / json.getBytes(StandardCharsets.UTF_8).length));
+        System.out.println(String.format("  %-22s %8d bytes JSON   %8d bytes binary   %3.0f%%", LIST_SIZE + " orders",
+            jsonListBytes, binaryList.length, 100.0 * binaryList.length / jsonListBytes));
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "\nWarm-up round:" : "\nMeasured round (ns per order):");
+            compare("encode single", SINGLE_ROUNDS, 1,
+                () -> sink += single.toJson().getBytes(StandardCharsets.UTF_8).length,
+                () -> sink += new WorkOrderCodec.Writer().order(single).toByteArray().length);
+            compare("decode single", SINGLE_ROUNDS, 1,
+                () -> sink += decodeJson(json).id,
+                () -> sink += new WorkOrderCodec.Reader(binary).order().id);
+            compare("encode list", ROUNDS, LIST_SIZE,
+                () -> sink += encodeJsonList(orders).getBytes(StandardCharsets.UTF_8).length,
+                () -> sink += streamBinaryList(orders));
+            compare("decode list", ROUNDS, LIST_SIZE,
+                () -> sink += decodeJsonList(jsonList).size(),
+                () -> sink += decodeBinaryList(binaryList).size());
+        }
+        System.out.println("=".repeat(70));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private interface Op {
+        void run() throws IOException;
+    }
+
+    private static void compare(String name, int rounds, int ordersPerRound, Op jsonOp, Op binaryOp) throws IOException {
+        double jsonNanos = time(rounds, jsonOp) / (double) ordersPerRound;
+        double binaryNanos = time(rounds, binaryOp) / (double) ordersPerRound;
+        System.out.println(String.format("  %-22s %8.1f JSON   %8.1f binary   x%.1f faster",
+            name, jsonNanos, binaryNanos, jsonNanos / binaryNanos));
+    }
+
+    private static double time(int rounds, Op op) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            op.run();
+        }
+        return (System.nanoTime() - start) / (double) rounds;
+    }
+
+    // What sendOrders does for JSON
+    private static String encodeJsonList(List<WorkOrder> orders) {
+        return orders.stream().map(WorkOrder::toJson).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static byte[] encodeBinaryList(List<WorkOrder> orders) throws IOException {
+        WorkOrderCodec.Writer writer = new WorkOrderCodec.Writer();
+        for (WorkOrder order : orders) {
+            writer.listItem(order);
+        }
+        return writer.listEnd().toByteArray();
+    }
+
+    // What sendOrders does for binary: stream in buffer-sized pieces
+    private static long streamBinaryList(List<WorkOrder> orders) throws IOException {
+        CountingStream out = new CountingStream();
+        WorkOrderCodec.Writer writer = new WorkOrderCodec.Writer(out);
+        for (WorkOrder order : orders) {
+            writer.listItem(order);
+        }
+        writer.listEnd().flush();
+        return out.count;
+    }
+
+    private static WorkOrder decodeJson(String json) {
+        return new WorkOrder(
+            Long.parseLong(WerkstattRESTServer.RequestHandler.extractJsonValue(json, "id")),
+            WerkstattRESTServer.RequestHandler.extractJsonValue(json, "licensePlate"),
+            WerkstattRESTServer.RequestHandler.extractJsonValue(json, "description"),
+            WorkOrder.Status.parse(WerkstattRESTServer.RequestHandler.extractJsonValue(json, "status")),
+            WorkOrder.parseDueDate(WerkstattRESTServer.RequestHandler.extractJsonValue(json, "dueDate")));
+    }
+
+    // The list is split at the top-level objects, then every object parsed like a request body
+    private static List<WorkOrder> decodeJsonList(String json) {
+        List<WorkOrder> orders = new ArrayList<>();
+        int depth = 0;
+        int start = -1;
+        boolean inString = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' && depth++ == 0) {
+                start = i;
+            } else if (c == '}' && --depth == 0) {
+                orders.add(decodeJson(json.substring(start, i + 1)));
+            }
+        }
+        return orders;
+    }
+
+    private static List<WorkOrder> decodeBinaryList(byte[] bytes) throws IOException {
+        List<WorkOrder> orders = new ArrayList<>();
+        WorkOrderCodec.Reader reader = new WorkOrderCodec.Reader(new ByteArrayInputStream(bytes));
+        for (WorkOrder order = reader.nextListItem(); order != null; order = reader.nextListItem()) {
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap footprint benchmark for the work order representation
+ * Compares the old all-String POJO with the current WorkOrder at 1M orders
+ *
+ * Run with a fixed heap for stable numbers, e.g. -Xms2g -Xmx2g
+ */
+public class WorkOrderHeapBenchmark {
+
+    private static final int ORDERS = 1_000_000;
+    private static final int DISTINCT_PLATES = 50_000;
+    private static final String[] STATUSES = {"PENDING", "IN_PROGRESS", "COMPLETED"};
+    private static final String[] DESCRIPTIONS = {
+        "Bremsscheiben wechseln", "Ölwechsel", "TÜV Hauptuntersuchung", "Klimaanlage prüfen"
+    };
+
+    // The representation before status/plate/dueDate were compacted
+    static class LegacyWorkOrder {
+        long id;
+        String licensePlate;
+        String description;
+        String status;
+        String dueDate;
+
+        LegacyWorkOrder(long id, String licensePlate, String description, String status, String dueDate) {
+            this.id = id;
+            this.licensePlate = licensePlate;
+            this.description = description;
+            this.status = status;
+            this.dueDate = dueDate;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=".repeat(70));
+        System.out.println("WORK ORDER HEAP FOOTPRINT - " + ORDERS + " orders");
+        System.out.println("=".repeat(70));
+
+        long legacy = measure(WorkOrderHeapBenchmark::buildLegacy);
+        long compact = measure(WorkOrderHeapBenchmark::buildCompact);
+
+        System.out.println("Legacy (String fields):  " + legacy / ORDERS + " bytes/order");
+        System.out.println("Compact (enum/dict/int): " + compact / ORDERS + " bytes/order");
+        System.out.println("Saved:                   " + (legacy - compact) * 100 / legacy + "%");
+        System.out.println("=".repeat(70));
+    }
+
+    private static List<LegacyWorkOrder> buildLegacy() {
+        List<LegacyWorkOrder> orders = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(new LegacyWorkOrder(i, plate(i), description(i), fresh(STATUSES[i % 3]), dueDate(i)));
+        }
+        return orders;
+    }
+
+    private static List<WorkOrder> buildCompact() {
+        List<WorkOrder> orders = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(new WorkOrder(i, plate(i), description(i),
+                WorkOrder.Status.parse(fresh(STATUSES[i % 3])), WorkOrder.parseDueDate(dueDate(i))));
+        }
+        return orders;
+    }
+
+    // Every value is a new String instance, as it would be when parsed from a request body
+    private static String plate(int i) {
+        int car = i % DISTINCT_PLATES;
+        return "SB-" + (char) ('A' + car % 26) + (char) ('A' + car / 26 % 26) + "-" + car;
+    }
+
+    private static String description(int i) {
+        return fresh(DESCRIPTIONS[i % DESCRIPTIONS.length]);
+    }
+
+    private static String dueDate(int i) {
+        return WorkOrder.formatDueDate(20_000 + i % 1_000);
+    }
+
+    private static String fresh(String s) {
+        return new String(s.toCharArray());
+    }
+
+    private static long measure(java.util.function.Supplier<List<?>> builder) {
+        long before = usedHeap();
+        List<?> orders = builder.get();
+        long after = usedHeap();
+        if (orders.size() != ORDERS) {
+            throw new IllegalStateException("unexpected size " + orders.size());
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,78 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Payload size and serialization time of GET /workorders with sparse fieldsets
+ * Compares the previous String.format based toJson with the compiled projections,
+ * for all fields and for the status board fields (id, licensePlate, status)
+ */
+public class WorkOrderProjectionBenchmark {
+
+    private static final int LIST_SIZE = 1_000;
+    private static final int ROUNDS = 3_000;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.println("=".repeat(70));
+        System.out.println("SPARSE FIELDSETS - list of " + LIST_SIZE + " orders x" + ROUNDS);
+        System.out.println("=".repeat(70));
+
+        List<WorkOrder> orders = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            orders.add(new WorkOrder(i + 1, "SB-XY-" + (i % 500),
+                "Bremsscheiben und Bremsbeläge vorne wechseln, Bremsflüssigkeit prüfen, Probefahrt " + i,
+                WorkOrder.Status.values()[i % 3], WorkOrder.parseDueDate("2025-10-15") + i % 90));
+        }
+
+        WorkOrderProjection all = WorkOrderProjection.ALL;
+        WorkOrderProjection board = WorkOrderProjection.parse("id,licensePlate,status");
+        if (!formatJson(orders).equals(all.toJson(orders))) {
+            throw new IllegalStateException("projection of all fields differs from the String.format output");
+        }
+
+        System.out.println("\nPayload size:");
+        System.out.println(String.format("  %-34s %8d bytes", "all fields", bytes(all.toJson(orders))));
+        System.out.println(String.format("  %-34s %8d bytes", "fields=id,licensePlate,status", bytes(board.toJson(orders))));
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "\nWarm-up round:" : "\nMeasured round (ns per order):");
+            run("String.format, all fields", () -> sink += formatJson(orders).length());
+            run("projection, all fields", () -> sink += all.toJson(orders).length());
+            run("projection, status board fields", () -> sink += board.toJson(orders).length());
+        }
+        System.out.println("=".repeat(70));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void run(String name, Runnable op) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            op.run();
+        }
+        double nanosPerOrder = (System.nanoTime() - start) / (double) ROUNDS / LIST_SIZE;
+        System.out.println(String.format("  %-34s %8.1f", name, nanosPerOrder));
+    }
+
+    private static int bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // WorkOrder.toJson() before projections
+    private static String formatJson(List<WorkOrder> orders) {
+        return orders.stream()
+            .map(wo -> String.format(
+                "{\"id\":%d,\"licensePlate\":\"%s\",\"description\":\"%s\",\"status\":\"%s\",\"dueDate\":\"%s\"}",
+                wo.id, escaped(wo.licensePlate), escaped(wo.description), wo.status,
+                WorkOrder.formatDueDate(wo.dueDate)))
+            .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static String escaped(String str) {
+        return str.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Latency of GET /workorders filters with the query planner against the
+ * previous full scan (one stream over all orders, every predicate per order)
+ * Runs selective queries that use an index, an IN list, a negation that has to
+ * scan and an unselective status filter, on a store of STORE_SIZE orders
+ */
+public class WorkOrderQueryBenchmark {
+
+    private static final int STORE_SIZE = 200_000;
+    private static final int ROUNDS = 200;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.println("=".repeat(70));
+        System.out.println("QUERY PLANNER - " + STORE_SIZE + " orders, x" + ROUNDS + " per query");
+        System.out.println("=".repeat(70));
+
+        WorkOrderStore store = new WorkOrderStore();
+        int today = WorkOrder.parseDueDate("2025-10-15");
+        for (int i = 0; i < STORE_SIZE; i++) {
+            // mostly completed, as in a long-running workshop
+            WorkOrder.Status status = i % 20 == 0 ? WorkOrder.Status.PENDING
+                : i % 20 == 1 ? WorkOrder.Status.IN_PROGRESS : WorkOrder.Status.COMPLETED;
+            store.create("SB-XY-" + (i % 20_000), "Inspektion " + i, status, today + i % 365);
+        }
+
+        String[][] queries = {
+            {"licensePlate=SB-XY-4711"},
+            {"status=PENDING", "dueDate=2025-10-20"},
+            {"status=PENDING,IN_PROGRESS"},
+            {"status=!COMPLETED"},
+            {"status=COMPLETED"},
+        };
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "\nWarm-up round:" : "\nMeasured round (us per query):");
+            System.out.println(String.format("  %-38s %10s %10s  %-16s %8s", "query", "full scan", "planner",
+                "strategy", "matched"));
+            for (String[] query : queries) {
+                Map<String, String> params = params(query);
+                WorkOrderQuery planned = WorkOrderQuery.parse(params);
+                WorkOrderQuery.Result result = planned.execute(store);
+                if (result.orders.size() != fullScan(store, planned)) {
+                    throw new IllegalStateException("planner and full scan disagree for " + params);
+                }
+                double scanMicros = time(() -> sink += fullScan(store, planned));
+                double plannedMicros = time(() -> sink += planned.execute(store).orders.size());
+                System.out.println(String.format("  %-38s %10.1f %10.1f  %-16s %8d", String.join("&", query),
+                    scanMicros, plannedMicros, result.strategy, result.orders.size()));
+            }
+        }
+        System.out.println("=".repeat(70));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static double time(Runnable op) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            op.run();
+        }
+        return (System.nanoTime() - start) / 1_000.0 / ROUNDS;
+    }
+
+    // the filtering before the planner: one pass over all orders
+    private static long fullScan(WorkOrderStore store, WorkOrderQuery query) {
+        return store.values().stream().filter(query::matches).count();
+    }
+
+    private static Map<String, String> params(String[] query) {
+        Map<String, String> params = new HashMap<>();
+        for (String param : query) {
+            int eq = param.indexOf('=');
+            params.put(param.substring(0, eq), param.substring(eq + 1));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,344 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test class for the versioned store and its point-in-time views
+ * Views read while writers run are checked against a replay of the mutation
+ * log up to the view's sequence
+ *
+ */
+public class WorkOrderStoreSnapshotTest {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(70));
+        System.out.println("WERKSTATT STORE SNAPSHOTS - TESTS");
+        System.out.println("=".repeat(70));
+
+        int totalTests = 0;
+        int passedTests = 0;
+
+        // Test 1: a view does not see later writes
+        totalTests++;
+        System.out.println("\n[TEST 1] A view keeps its state through update, delete and create");
+        if (testIsolation()) {
+            passedTests++;
+            printSuccess("View unchanged, latest state sees all writes, queries follow the view");
+        } else {
+            printFailure("View saw a later write");
+        }
+
+        // Test 2: consistency under concurrent writers
+        totalTests++;
+        System.out.println("\n[TEST 2] Scans during concurrent writes equal the log replayed to their sequence");
+        if (testConsistentScans()) {
+            passedTests++;
+            printSuccess("Every scan was exactly one point in time");
+        } else {
+            printFailure("A scan mixed states");
+        }
+
+        // Test 3: reclaiming old versions
+        totalTests++;
+        System.out.println("\n[TEST 3] Old versions and index entries dropped once no view needs them");
+        if (testReclaim()) {
+            passedTests++;
+            printSuccess("Versions kept while a view was open, gone after it closed");
+        } else {
+            printFailure("Versions leaked or dropped too early");
+        }
+
+        // Test 4: asOf within the retention window
+        totalTests++;
+        System.out.println("\n[TEST 4] Earlier sequences readable within retainSequences");
+        if (testRetention()) {
+            passedTests++;
+            printSuccess("Retained sequences open, older ones refused");
+        } else {
+            printFailure("Retention window wrong");
+        }
+
+        // Test 5: over HTTP
+        totalTests++;
+        System.out.println("\n[TEST 5] GET with asOf and X-Sequence over HTTP");
+        if (testHttp()) {
+            passedTests++;
+            printSuccess("X-Sequence reproduces the listing, invalid or reclaimed asOf rejected");
+        } else {
+            printFailure("asOf over HTTP failed");
+        }
+
+        // Test 6: retained index entries and IN lists
+        totalTests++;
+        System.out.println("\n[TEST 6] IN list through the index after an update");
+        if (testIndexInListAfterUpdate()) {
+            passedTests++;
+            printSuccess("Order under its old and new value returned once");
+        } else {
+            printFailure("Updated order returned twice");
+        }
+
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("TEST SUMMARY");
+        System.out.println("=".repeat(70));
+        System.out.println("Total tests:  " + totalTests);
+        System.out.println("Passed:    " + passedTests);
+        System.out.println("Failed:    " + (totalTests - passedTests));
+        System.out.println("=".repeat(70));
+    }
+
+    private static boolean testIsolation() {
+        WorkOrderStore store = new WorkOrderStore();
+        WorkOrder brakes = store.create("SB-XY-123", "Bremsscheiben wechseln", WorkOrder.Status.PENDING, day("2025-10-15"));
+        WorkOrder oil = store.create("KL-AA-007", "Ölwechsel", WorkOrder.Status.IN_PROGRESS, day("2025-09-01"));
+
+        boolean ok;
+        try (WorkOrderStore.ReadView view = store.openView()) {
+            store.update(brakes.id, null, null, WorkOrder.Status.COMPLETED, null);
+            store.delete(oil.id);
+            WorkOrder added = store.create("SB-BB-999", "TÜV Hauptuntersuchung", WorkOrder.Status.PENDING, day("2025-12-20"));
+
+            ok = view.get(brakes.id).status == WorkOrder.Status.PENDING
+                && view.get(oil.id) != null
+                && view.get(added.id) == null
+                && ids(view.partitions()).equals(List.of(brakes.id, oil.id))
+                && ids(store.partitions()).equals(List.of(brakes.id, added.id))
+                && store.get(brakes.id).status == WorkOrder.Status.COMPLETED;
+
+            // the status index no longer lists brakes as PENDING for the latest state, but the view still finds it
+            WorkOrderQuery pending = WorkOrderQuery.parse(Map.of("status", "PENDING"));
+            ok &= orderIds(pending.execute(view).orders).equals(List.of(brakes.id))
+                && orderIds(pending.execute(store).orders).equals(List.of(added.id));
+            System.out.println("  View at " + view.sequence + ": " + ids(view.partitions())
+                + ", latest at " + store.sequence() + ": " + ids(store.partitions()));
+        }
+        return ok;
+    }
+
+    private static boolean testConsistentScans() throws InterruptedException {
+        WorkOrderStore store = new WorkOrderStore();
+        List<WorkOrderStore.Mutation> log = new ArrayList<>();
+        store.addListener(log::add); // called under the store lock, in sequence order
+        for (int i = 0; i < 200; i++) {
+            store.create("SB-XY-" + i, "Inspektion", WorkOrder.Status.PENDING, day("2025-10-15") + i % 30);
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<Object[]> scans = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            long seed = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20_000; i++) {
+                    long id = random.nextInt(400);
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            store.create("HOM-Z-" + i, "Reifenwechsel", WorkOrder.Status.PENDING, day("2025-11-01"));
+                            break;
+                        case 1:
+                            store.update(id, null, null, WorkOrder.Status.values()[random.nextInt(3)], null);
+                            break;
+                        default:
+                            store.delete(id);
+                    }
+                }
+            }));
+        }
+        for (int r = 0; r < 4; r++) {
+            threads.add(new Thread(() -> {
+                while (writing.get()) {
+                    try (WorkOrderStore.ReadView view = store.openView()) {
+                        Map<Long, WorkOrder> seen = new HashMap<>();
+                        for (Collection<WorkOrder> partition : view.partitions()) {
+                            for (WorkOrder order : partition) {
+                                seen.put(order.id, order);
+                            }
+                        }
+                        scans.add(new Object[] {view.sequence, seen});
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (int w = 0; w < 4; w++) {
+            threads.get(w).join();
+        }
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // readers may have held back the last writes' cleanup, the next write catches up
+        store.create("SB-XY-999", "Inspektion", WorkOrder.Status.PENDING, day("2025-10-15"));
+
+        // replay the log, comparing each scan at its sequence
+        List<Object[]> ordered = new ArrayList<>(scans);
+        ordered.sort((a, b) -> Long.compare((Long) a[0], (Long) b[0]));
+        Map<Long, WorkOrder> state = new HashMap<>();
+        int next = 0;
+        int mismatches = 0;
+        for (Object[] scan : ordered) {
+            long sequence = (Long) scan[0];
+            while (next < log.size() && log.get(next).sequence <= sequence) {
+                WorkOrderStore.Mutation mutation = log.get(next++);
+                if (mutation.type == WorkOrderStore.Mutation.Type.PUT) {
+                    state.put(mutation.id, mutation.order);
+                } else {
+                    state.remove(mutation.id);
+                }
+            }
+            if (!state.equals(scan[1])) {
+                mismatches++;
+            }
+        }
+        System.out.println("  Writes: " + log.size() + ", scans: " + ordered.size() + ", mismatches: " + mismatches
+            + ", versions left: " + store.retainedVersions());
+        return mismatches == 0 && ordered.size() > 10 && store.retainedVersions() == 0;
+    }
+
+    private static boolean testReclaim() {
+        WorkOrderStore store = new WorkOrderStore();
+        WorkOrder order = store.create("SB-XY-123", "Bremsscheiben wechseln", WorkOrder.Status.PENDING, day("2025-10-15"));
+        WorkOrder gone = store.create("KL-AA-007", "Ölwechsel", WorkOrder.Status.PENDING, day("2025-09-01"));
+
+        WorkOrderStore.ReadView view = store.openView();
+        store.update(order.id, null, null, WorkOrder.Status.IN_PROGRESS, null);
+        store.update(order.id, null, null, WorkOrder.Status.COMPLETED, day("2025-10-20"));
+        store.delete(gone.id);
+        int whileOpen = store.retainedVersions();
+        boolean ok = whileOpen == 4 // two replaced, the deleted order and its delete
+            && store.idsWithStatus(WorkOrder.Status.PENDING).size() == 2
+            && store.idsDueOn(day("2025-10-15")).contains(order.id);
+
+        view.close();
+        store.update(order.id, null, "Bremsscheiben und Beläge", null, null);
+        ok &= store.retainedVersions() == 0
+            && store.idsWithStatus(WorkOrder.Status.PENDING).isEmpty()
+            && store.idsWithStatus(WorkOrder.Status.IN_PROGRESS).isEmpty()
+            && store.idsWithStatus(WorkOrder.Status.COMPLETED).equals(Set.of(order.id))
+            && store.idsDueOn(day("2025-10-15")).isEmpty()
+            && store.idsWithPlate("KL-AA-007").isEmpty()
+            && store.size() == 1;
+        System.out.println("  Retained while open: " + whileOpen + ", after close: " + store.retainedVersions());
+        return ok;
+    }
+
+    private static boolean testRetention() {
+        WorkOrderStore store = new WorkOrderStore(ShardLayout.SINGLE, 0, 5);
+        WorkOrder order = store.create("SB-XY-123", "Inspektion", WorkOrder.Status.PENDING, day("2025-10-15"));
+        for (int i = 0; i < 9; i++) {
+            store.update(order.id, null, "Inspektion " + i, null, null);
+        }
+        long latest = store.sequence();
+        boolean ok = latest == 10 && store.oldestSequence() == 5;
+        try (WorkOrderStore.ReadView oldest = store.openView(5)) {
+            ok &= oldest != null && oldest.get(order.id).description.equals("Inspektion 3");
+        }
+        ok &= store.openView(4) == null;
+        ok &= store.retainedVersions() == 5;
+        System.out.println("  Latest " + latest + ", oldest readable " + store.oldestSequence()
+            + ", versions kept " + store.retainedVersions());
+        return ok;
+    }
+
+    // while its old version is retained the order is indexed under PENDING and IN_PROGRESS
+    private static boolean testIndexInListAfterUpdate() {
+        WorkOrderStore store = new WorkOrderStore(ShardLayout.SINGLE, 0, 10_000);
+        for (int i = 0; i < 10; i++) {
+            store.create("KL-AA-" + i, "Ölwechsel", WorkOrder.Status.COMPLETED, day("2025-09-01"));
+        }
+        WorkOrder order = store.create("SB-XY-123", "Inspektion", WorkOrder.Status.PENDING, day("2025-10-15"));
+        store.update(order.id, null, null, WorkOrder.Status.IN_PROGRESS, null);
+
+        WorkOrderQuery.Result result = WorkOrderQuery.parse(Map.of("status", "PENDING,IN_PROGRESS")).execute(store);
+        System.out.println("  Strategy " + result.strategy + ", ids " + orderIds(result.orders)
+            + ", examined " + result.examined);
+        return result.strategy.equals("index:status")
+            && orderIds(result.orders).equals(List.of(order.id))
+            && result.examined == 1;
+    }
+
+    private static boolean testHttp() throws Exception {
+        WorkOrderStore store = new WorkOrderStore(ShardLayout.SINGLE, 0, 3);
+        store.create("SB-XY-123", "Bremsscheiben wechseln", WorkOrder.Status.PENDING, day("2025-10-15"));
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/").setHandler(new WerkstattRESTServer.RequestHandler(ServerConfig.load(), store));
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getAddress().getPort();
+
+            HttpResponse<String> before = get(client, base + "/workorders");
+            String sequence = before.headers().firstValue("X-Sequence").orElse("");
+            store.create("KL-AA-007", "Ölwechsel", WorkOrder.Status.IN_PROGRESS, day("2025-09-01"));
+            store.update(1, null, null, WorkOrder.Status.COMPLETED, null);
+
+            HttpResponse<String> replay = get(client, base + "/workorders?asOf=" + sequence);
+            HttpResponse<String> item = get(client, base + "/workorders/1?asOf=" + sequence);
+            HttpResponse<String> latest = get(client, base + "/workorders");
+            for (int i = 0; i < 3; i++) {
+                store.update(1, null, "Bremsen " + i, null, null);
+            }
+            HttpResponse<String> reclaimed = get(client, base + "/workorders?asOf=" + sequence);
+            HttpResponse<String> ahead = get(client, base + "/workorders?asOf=99");
+            HttpResponse<String> invalid = get(client, base + "/workorders?asOf=gestern");
+            System.out.println("  X-Sequence " + sequence + ", replay: " + replay.body());
+            System.out.println("  Reclaimed: " + reclaimed.statusCode() + " " + reclaimed.body());
+
+            return sequence.equals("1")
+                && replay.statusCode() == 200 && replay.body().equals(before.body())
+                && replay.headers().firstValue("X-Sequence").orElse("").equals("1")
+                && item.statusCode() == 200 && item.body().contains("\"status\":\"PENDING\"")
+                && latest.body().contains("COMPLETED") && latest.body().contains("KL-AA-007")
+                && latest.headers().firstValue("X-Sequence").orElse("").equals("3")
+                && reclaimed.statusCode() == 410 && reclaimed.body().contains("Oldest available sequence is 3")
+                && ahead.statusCode() == 400 && invalid.statusCode() == 400;
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpResponse<String> get(HttpClient client, String uri) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(uri)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<Long> ids(List<Collection<WorkOrder>> partitions) {
+        List<WorkOrder> orders = new ArrayList<>();
+        partitions.forEach(orders::addAll);
+        return orderIds(orders);
+    }
+
+    private static List<Long> orderIds(List<WorkOrder> orders) {
+        List<Long> ids = new ArrayList<>();
+        for (WorkOrder order : orders) {
+            ids.add(order.id);
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private static int day(String date) {
+        return WorkOrder.parseDueDate(date);
+    }
+
+    private static void printSuccess(String message) {
+        System.out.println("  Succeeded: " + message);
+    }
+
+    private static void printFailure(String message) {
+        System.out.println("  Failed: " + message);
+    }
+}